@@ -0,0 +1,76 @@
+package com.finance.data;
+
+import com.finance.model.Category;
+import com.finance.model.Money;
+import com.finance.model.TransactionType;
+
+import java.time.YearMonth;
+
+/**
+ * Totals of the transactions of one category and type in one month
+ */
+public final class AggregateCell {
+    private final YearMonth month;
+    private final Category category;
+    private final TransactionType type;
+    private final long sumCents;
+    private final long count;
+    private final long minCents;
+    private final long maxCents;
+
+    AggregateCell(YearMonth month, Category category, TransactionType type,
+                  long sumCents, long count, long minCents, long maxCents) {
+        this.month = month;
+        this.category = category;
+        this.type = type;
+        this.sumCents = sumCents;
+        this.count = count;
+        this.minCents = minCents;
+        this.maxCents = maxCents;
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    /**
+     * Get the category; cells are keyed by category name, so this is one
+     * of the transactions' categories with that name
+     */
+    public Category getCategory() {
+        return category;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public double getSum() {
+        return Money.toAmount(sumCents);
+    }
+
+    /**
+     * Get the sum in whole cents
+     */
+    public long getSumCents() {
+        return sumCents;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the smallest amount, 0 if there are no transactions
+     */
+    public double getMin() {
+        return count == 0 ? 0 : Money.toAmount(minCents);
+    }
+
+    /**
+     * Get the largest amount, 0 if there are no transactions
+     */
+    public double getMax() {
+        return count == 0 ? 0 : Money.toAmount(maxCents);
+    }
+}
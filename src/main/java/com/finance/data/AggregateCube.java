@@ -0,0 +1,310 @@
+package com.finance.data;
+
+import com.finance.model.Category;
+import com.finance.model.Transaction;
+import com.finance.model.TransactionType;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Sum, count, minimum and maximum of transaction amounts per month,
+ * category and type, kept up to date as transactions change so totals do
+ * not have to be recomputed from the transactions. Categories are keyed
+ * by name. Amounts are held in whole cents so adding and removing a
+ * transaction always restores the previous sum exactly.
+ *
+ * Removing the smallest or largest amount of a cell cannot be undone
+ * incrementally; the month is marked stale and rebuilt from its
+ * transactions the next time it is read.
+ *
+ * The serialized form writes the cells as primitive fields rather than
+ * as objects, so a saved cube is quick to read back.
+ */
+final class AggregateCube implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Identifies the transaction files the cube was computed from
+    private long stamp;
+    private transient TreeMap<YearMonth, Map<Key, Cell>> months = new TreeMap<>();
+    private transient Set<YearMonth> staleMonths = new HashSet<>();
+    // One Category object per name, shared by the cells of every month
+    private transient Map<String, Category> categories = new HashMap<>();
+
+    private static final class Key {
+        final String categoryName;
+        final TransactionType type;
+
+        Key(String categoryName, TransactionType type) {
+            this.categoryName = categoryName;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(categoryName, key.categoryName) && type == key.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(categoryName, type);
+        }
+    }
+
+    private static final class Cell {
+        Category category;
+        long sum;
+        long count;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+    }
+
+    long getStamp() {
+        return stamp;
+    }
+
+    void setStamp(long stamp) {
+        this.stamp = stamp;
+    }
+
+    /**
+     * Add a transaction to its cell. Undated transactions are not aggregated.
+     */
+    void add(Transaction transaction) {
+        if (transaction == null || transaction.getDate() == null) return;
+        add(YearMonth.from(transaction.getDate()), transaction.getCategory(),
+            transaction.getType(), transaction.getAmountCents());
+    }
+
+    /**
+     * Add one amount given by its epoch day. Undated amounts are not aggregated.
+     */
+    void add(int epochDay, Category category, TransactionType type, long cents) {
+        if (epochDay == TransactionFileFormat.NO_DATE) return;
+        add(YearMonth.from(LocalDate.ofEpochDay(epochDay)), category, type, cents);
+    }
+
+    /**
+     * Add one amount to a cell
+     */
+    void add(YearMonth month, Category category, TransactionType type, long cents) {
+        add(month, category, type, cents, 1, cents, cents);
+    }
+
+    /**
+     * Add a total of several amounts to a cell
+     *
+     * @param sum the sum of the amounts in cents
+     * @param count the number of amounts
+     * @param min the smallest amount
+     * @param max the largest amount
+     */
+    void add(YearMonth month, Category category, TransactionType type, long sum, long count, long min, long max) {
+        Key key = new Key(category == null ? null : category.getName(), type);
+        Cell cell = months.computeIfAbsent(month, m -> new HashMap<>()).computeIfAbsent(key, k -> new Cell());
+        if (cell.category == null && category != null) {
+            cell.category = categories.computeIfAbsent(key.categoryName, name -> category);
+        }
+        cell.sum += sum;
+        cell.count += count;
+        cell.min = Math.min(cell.min, min);
+        cell.max = Math.max(cell.max, max);
+    }
+
+    /**
+     * Remove a transaction from its cell
+     */
+    void remove(Transaction transaction) {
+        if (transaction == null || transaction.getDate() == null) return;
+
+        YearMonth month = YearMonth.from(transaction.getDate());
+        Map<Key, Cell> cells = months.get(month);
+        Category category = transaction.getCategory();
+        Key key = new Key(category == null ? null : category.getName(), transaction.getType());
+        Cell cell = cells == null ? null : cells.get(key);
+        if (cell == null) return;
+
+        long cents = transaction.getAmountCents();
+        cell.sum -= cents;
+        cell.count--;
+        if (cell.count == 0) {
+            cells.remove(key);
+            if (cells.isEmpty()) {
+                months.remove(month);
+            }
+        } else if (cents == cell.min || cents == cell.max) {
+            staleMonths.add(month);
+        }
+    }
+
+    /**
+     * Check whether a month needs rebuilding before it is read
+     */
+    boolean isStale(YearMonth month) {
+        return staleMonths.contains(month);
+    }
+
+    /**
+     * Recompute a month from its transactions
+     *
+     * @param month the month
+     * @param transactions all transactions of the month
+     */
+    void rebuild(YearMonth month, List<Transaction> transactions) {
+        months.remove(month);
+        staleMonths.remove(month);
+        for (Transaction transaction : transactions) {
+            add(transaction);
+        }
+    }
+
+    /**
+     * Get the first month with transactions
+     *
+     * @return the month, or null if the cube is empty
+     */
+    YearMonth firstMonth() {
+        return months.isEmpty() ? null : months.firstKey();
+    }
+
+    /**
+     * Get the last month with transactions
+     *
+     * @return the month, or null if the cube is empty
+     */
+    YearMonth lastMonth() {
+        return months.isEmpty() ? null : months.lastKey();
+    }
+
+    /**
+     * Get one cell
+     *
+     * @return the cell, with a count of 0 if there are no such transactions
+     */
+    AggregateCell cell(YearMonth month, Category category, TransactionType type) {
+        Map<Key, Cell> cells = months.get(month);
+        Cell cell = cells == null ? null
+            : cells.get(new Key(category == null ? null : category.getName(), type));
+        if (cell == null) {
+            return new AggregateCell(month, category, type, 0, 0, 0, 0);
+        }
+        return view(month, type, cell);
+    }
+
+    /**
+     * Get every cell of a month
+     */
+    List<AggregateCell> cells(YearMonth month) {
+        List<AggregateCell> result = new ArrayList<>();
+        Map<Key, Cell> cells = months.get(month);
+        if (cells != null) {
+            for (Map.Entry<Key, Cell> entry : cells.entrySet()) {
+                result.add(view(month, entry.getKey().type, entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copy the cube so it can be written by another thread
+     */
+    AggregateCube copy() {
+        AggregateCube copy = new AggregateCube();
+        copy.stamp = stamp;
+        copy.staleMonths.addAll(staleMonths);
+        copy.categories.putAll(categories);
+        for (Map.Entry<YearMonth, Map<Key, Cell>> month : months.entrySet()) {
+            Map<Key, Cell> cells = new HashMap<>();
+            for (Map.Entry<Key, Cell> entry : month.getValue().entrySet()) {
+                Cell cell = new Cell();
+                cell.category = entry.getValue().category;
+                cell.sum = entry.getValue().sum;
+                cell.count = entry.getValue().count;
+                cell.min = entry.getValue().min;
+                cell.max = entry.getValue().max;
+                cells.put(entry.getKey(), cell);
+            }
+            copy.months.put(month.getKey(), cells);
+        }
+        return copy;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(staleMonths.size());
+        for (YearMonth month : staleMonths) {
+            writeMonth(out, month);
+        }
+        out.writeInt(months.size());
+        for (Map.Entry<YearMonth, Map<Key, Cell>> month : months.entrySet()) {
+            writeMonth(out, month.getKey());
+            out.writeInt(month.getValue().size());
+            for (Map.Entry<Key, Cell> entry : month.getValue().entrySet()) {
+                Cell cell = entry.getValue();
+                // Categories and names repeat every month and are written once each
+                out.writeObject(entry.getKey().categoryName);
+                out.writeByte(entry.getKey().type == null ? -1 : entry.getKey().type.ordinal());
+                out.writeObject(cell.category);
+                out.writeLong(cell.sum);
+                out.writeLong(cell.count);
+                out.writeLong(cell.min);
+                out.writeLong(cell.max);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        staleMonths = new HashSet<>();
+        months = new TreeMap<>();
+        categories = new HashMap<>();
+        TransactionType[] types = TransactionType.values();
+
+        int staleCount = in.readInt();
+        for (int i = 0; i < staleCount; i++) {
+            staleMonths.add(readMonth(in));
+        }
+        int monthCount = in.readInt();
+        for (int i = 0; i < monthCount; i++) {
+            YearMonth month = readMonth(in);
+            int cellCount = in.readInt();
+            Map<Key, Cell> cells = new HashMap<>();
+            for (int j = 0; j < cellCount; j++) {
+                String categoryName = (String) in.readObject();
+                byte type = in.readByte();
+                Cell cell = new Cell();
+                cell.category = (Category) in.readObject();
+                if (cell.category != null) {
+                    categories.putIfAbsent(categoryName, cell.category);
+                }
+                cell.sum = in.readLong();
+                cell.count = in.readLong();
+                cell.min = in.readLong();
+                cell.max = in.readLong();
+                cells.put(new Key(categoryName, type == -1 ? null : types[type]), cell);
+            }
+            months.put(month, cells);
+        }
+    }
+
+    private static void writeMonth(ObjectOutputStream out, YearMonth month) throws IOException {
+        out.writeInt(month.getYear());
+        out.writeByte(month.getMonthValue());
+    }
+
+    private static YearMonth readMonth(ObjectInputStream in) throws IOException {
+        return YearMonth.of(in.readInt(), in.readByte());
+    }
+
+    private static AggregateCell view(YearMonth month, TransactionType type, Cell cell) {
+        return new AggregateCell(month, cell.category, type, cell.sum, cell.count, cell.min, cell.max);
+    }
+}
@@ -0,0 +1,70 @@
+package com.finance.data;
+
+/**
+ * Filter-and-sum over primitive amount columns, the inner loop of totalling
+ * a range of stored rows. Each row has an amount in cents and an int key
+ * (category and type, see {@link MappedTransactionFile#aggregate}); the
+ * kernel adds up the rows whose key matches.
+ *
+ * This class is the scalar implementation. When the jdk.incubator.vector
+ * module is present at run time (--add-modules jdk.incubator.vector),
+ * {@link #get()} returns {@link VectorAmountKernel}, which does the same with
+ * SIMD instructions; -Dfinance.vector=false forces the scalar one.
+ */
+class AmountKernel {
+    private static final AmountKernel INSTANCE = select();
+
+    AmountKernel() {}
+
+    /**
+     * Get the fastest kernel available
+     */
+    static AmountKernel get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Add up the amounts of the rows with a given key
+     *
+     * @param cents amount column
+     * @param keys key column
+     * @param from first row, inclusive
+     * @param to last row, exclusive
+     * @param key the key to match
+     * @param result sum, count, minimum and maximum of the matching
+     *               amounts so far, updated in place
+     */
+    void sumMatching(long[] cents, int[] keys, int from, int to, int key, long[] result) {
+        long sum = 0;
+        long count = 0;
+        long min = result[2];
+        long max = result[3];
+        for (int i = from; i < to; i++) {
+            if (keys[i] == key) {
+                long amount = cents[i];
+                sum += amount;
+                count++;
+                min = Math.min(min, amount);
+                max = Math.max(max, amount);
+            }
+        }
+        result[0] += sum;
+        result[1] += count;
+        result[2] = min;
+        result[3] = max;
+    }
+
+    private static AmountKernel select() {
+        if (!Boolean.parseBoolean(System.getProperty("finance.vector", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new AmountKernel();
+        }
+        try {
+            return (AmountKernel) Class.forName("com.finance.data.VectorAmountKernel")
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            System.err.println("Vector kernel unavailable, using scalar: " + e);
+            return new AmountKernel();
+        }
+    }
+}
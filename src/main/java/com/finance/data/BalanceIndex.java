@@ -0,0 +1,143 @@
+package com.finance.data;
+
+import com.finance.model.Category;
+import com.finance.model.Transaction;
+import com.finance.model.TransactionType;
+
+/**
+ * Running balance by date: a Fenwick (binary indexed) tree over epoch days
+ * holding the net amount of each day in cents, income positive and
+ * everything else negative. The balance before any date is a prefix sum,
+ * found in O(log n) for n days covered, and adding, editing or
+ * back-dating a transaction is a point update of the same cost.
+ *
+ * The days covered grow as transactions with earlier or later dates
+ * arrive. Undated transactions count towards the total only.
+ *
+ * Not thread-safe, callers synchronize.
+ */
+final class BalanceIndex implements TransactionSegment.AmountVisitor {
+    private static final int INITIAL_DAYS = 1024;
+
+    private int origin;    // epoch day of the first position
+    private long[] days;   // net cents of each day
+    private long[] tree;   // Fenwick tree over days, 1-based
+    private long total;
+
+    /**
+     * Add a transaction
+     */
+    void add(Transaction transaction) {
+        if (transaction != null) {
+            add(epochDay(transaction), signedCents(transaction));
+        }
+    }
+
+    /**
+     * Remove a transaction added before
+     */
+    void remove(Transaction transaction) {
+        if (transaction != null) {
+            add(epochDay(transaction), -signedCents(transaction));
+        }
+    }
+
+    /**
+     * Add a transaction's amount
+     */
+    @Override
+    public void visit(int epochDay, Category category, TransactionType type, long cents) {
+        add(epochDay, type == TransactionType.INCOME ? cents : -cents);
+    }
+
+    /**
+     * Add a net amount to a day
+     *
+     * @param epochDay the day, or TransactionFileFormat.NO_DATE
+     * @param cents the amount in cents, negative for money going out
+     */
+    void add(int epochDay, long cents) {
+        total += cents;
+        if (epochDay == TransactionFileFormat.NO_DATE) return;
+
+        cover(epochDay);
+        int position = epochDay - origin;
+        days[position] += cents;
+        for (int i = position + 1; i <= days.length; i += i & -i) {
+            tree[i] += cents;
+        }
+    }
+
+    /**
+     * Get the balance of all dated transactions before a day
+     *
+     * @return the balance in cents
+     */
+    long balanceBefore(long epochDay) {
+        if (days == null) return 0;
+
+        long count = Math.min(Math.max(epochDay - origin, 0), days.length);
+        long balance = 0;
+        for (int i = (int) count; i > 0; i -= i & -i) {
+            balance += tree[i];
+        }
+        return balance;
+    }
+
+    /**
+     * Get the balance of all transactions, dated or not
+     *
+     * @return the balance in cents
+     */
+    long total() {
+        return total;
+    }
+
+    private static int epochDay(Transaction transaction) {
+        return transaction.getDate() == null
+            ? TransactionFileFormat.NO_DATE : (int) transaction.getDate().toEpochDay();
+    }
+
+    private static long signedCents(Transaction transaction) {
+        long cents = transaction.getAmountCents();
+        return transaction.getType() == TransactionType.INCOME ? cents : -cents;
+    }
+
+    /**
+     * Make sure a day has a position, growing the covered days at least
+     * twofold when it is outside them
+     */
+    private void cover(int epochDay) {
+        if (days == null) {
+            origin = epochDay - INITIAL_DAYS / 2;
+            days = new long[INITIAL_DAYS];
+            tree = new long[INITIAL_DAYS + 1];
+            return;
+        }
+        if (epochDay >= origin && epochDay - origin < days.length) return;
+
+        long first = Math.min(origin, epochDay);
+        long last = Math.max(origin + (long) days.length - 1, epochDay);
+        long length = Math.max(last - first + 1, days.length * 2L);
+        if (length > Integer.MAX_VALUE - 1) {
+            throw new IllegalArgumentException("Date out of range: epoch day " + epochDay);
+        }
+
+        // Leave the extra room on the side that had to grow
+        int newOrigin = (int) (epochDay < origin ? last - length + 1 : first);
+        long[] newDays = new long[(int) length];
+        System.arraycopy(days, 0, newDays, origin - newOrigin, days.length);
+        origin = newOrigin;
+        days = newDays;
+
+        // Linear-time Fenwick construction
+        tree = new long[days.length + 1];
+        for (int i = 1; i <= days.length; i++) {
+            tree[i] += days[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= days.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.finance.data;
+
+import com.finance.model.Budget;
+import com.finance.model.Category;
+import com.finance.model.Transaction;
+import com.finance.model.TransactionType;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Budgets by month and category name, keeping the amount each has spent
+ * current. When the budgets change their spending is read from the
+ * aggregate cube; after that every expense added, edited or deleted is
+ * applied to the budgets of its month and category, found with two hash
+ * lookups. An edit that moves an expense to another date or category comes
+ * in as a remove and an add.
+ *
+ * Not thread-safe, callers synchronize.
+ */
+final class BudgetIndex {
+    private final Map<YearMonth, Map<String, List<Budget>>> budgets = new HashMap<>();
+
+    /**
+     * Index a new set of budgets and set the amount each has spent
+     *
+     * @param all every budget
+     * @param aggregates the current aggregates of all transactions
+     */
+    void rebuild(List<Budget> all, AggregateCube aggregates) {
+        budgets.clear();
+        for (Budget budget : all) {
+            if (budget.getPeriod() == null || budget.getCategory() == null) continue;
+
+            budgets.computeIfAbsent(budget.getPeriod(), month -> new HashMap<>())
+                .computeIfAbsent(budget.getCategory().getName(), name -> new ArrayList<>(1))
+                .add(budget);
+            budget.setSpentCents(aggregates.cell(
+                budget.getPeriod(), budget.getCategory(), TransactionType.EXPENSE).getSumCents());
+        }
+    }
+
+    /**
+     * Get the budgets of a month
+     */
+    List<Budget> get(YearMonth month) {
+        Map<String, List<Budget>> byCategory = budgets.get(month);
+        if (byCategory == null) return new ArrayList<>();
+
+        List<Budget> result = new ArrayList<>();
+        for (List<Budget> matching : byCategory.values()) {
+            result.addAll(matching);
+        }
+        return result;
+    }
+
+    /**
+     * Count an expense against its budgets
+     */
+    void add(Transaction transaction) {
+        apply(transaction, 1);
+    }
+
+    /**
+     * Take back an expense counted before
+     */
+    void remove(Transaction transaction) {
+        apply(transaction, -1);
+    }
+
+    private void apply(Transaction transaction, int sign) {
+        if (transaction == null || transaction.getType() != TransactionType.EXPENSE
+                || transaction.getDate() == null || budgets.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<Budget>> byCategory = budgets.get(YearMonth.from(transaction.getDate()));
+        if (byCategory == null) return;
+        Category category = transaction.getCategory();
+        List<Budget> matching = byCategory.get(category == null ? null : category.getName());
+        if (matching == null) return;
+
+        long cents = sign * transaction.getAmountCents();
+        for (Budget budget : matching) {
+            budget.setSpentCents(budget.getSpentCents() + cents);
+        }
+    }
+}
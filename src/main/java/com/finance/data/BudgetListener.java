@@ -0,0 +1,14 @@
+package com.finance.data;
+
+/**
+ * Interface for components that keep state about budgets, such as which
+ * thresholds each has reached
+ */
+public interface BudgetListener {
+    /**
+     * Called after a budget was saved, updated or deleted, on the thread
+     * that made the change. Budgets replaced by a load or import are
+     * reported to transaction listeners instead.
+     */
+    void budgetsChanged();
+}
@@ -8,6 +8,8 @@ import java.util.List;
 
 
 import com.finance.model.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
 
 /**
@@ -15,22 +17,42 @@ import java.util.List;
  * Demonstrates interface usage
  */
 public interface DataManager {
-    // Transaction operations
+    // Transaction operations. Adding, saving, updating or deleting a transaction
+    // in a month whose stored transactions cannot be read throws
+    // java.io.UncheckedIOException and changes nothing.
     void addTransaction(Transaction transaction);
     void saveTransaction(Transaction transaction);
     void updateTransaction(Transaction transaction);
     void deleteTransaction(String transactionId);
     List<Transaction> getAllTransactions();
     List<Transaction> getTransactions();
+    List<Transaction> getTransactions(LocalDate startDate, LocalDate endDate);
     List<Transaction> loadTransactions();
+    List<Transaction> getRecentTransactions(int count);
     Transaction getTransactionById(String id);
     
+    // Change tracking: the version grows with every transaction change
+    long getModificationVersion();
+    void addTransactionListener(TransactionListener listener);
+    void removeTransactionListener(TransactionListener listener);
+    
+    // Aggregates per month, category and type
+    AggregateCell getAggregate(YearMonth month, Category category, TransactionType type);
+    List<AggregateCell> getAggregates(LocalDate startDate, LocalDate endDate);
+    
+    // Balances: income minus expenses
+    double getBalanceBefore(LocalDate date);
+    double getTotalBalance();
+    
     // Budget operations
     void saveBudget(Budget budget);
     void updateBudget(Budget budget);
     void deleteBudget(Budget budget);
     List<Budget> getAllBudgets();
+    List<Budget> getBudgets(YearMonth period);
     List<Budget> loadBudgets();
+    void addBudgetListener(BudgetListener listener);
+    void removeBudgetListener(BudgetListener listener);
 
     // Category operations
     void addCategory(Category category);
@@ -50,6 +72,13 @@ public interface DataManager {
     void saveData();
     void loadData();
     
+    // Persistence control
+    void flush();
+    void close();
+    boolean hasPendingWrites();
+    void addPersistenceListener(PersistenceListener listener);
+    void removePersistenceListener(PersistenceListener listener);
+    
     // Data backup and restore
     boolean exportData(String filePath);
     boolean importData(String filePath);
@@ -11,24 +11,99 @@ import java.awt.Color;
 import com.finance.model.*;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * File-based implementation of DataManager
  * Demonstrates interface implementation and file I/O
+ * 
+ * All file writes happen on a single background writer thread. With auto
+ * save enabled (the default) changes are written behind: a burst of edits
+ * is coalesced into one flush at most WRITE_BEHIND_DELAY_MS after the first
+ * unsaved change. With auto save disabled every mutation waits for its
+ * write to complete before returning.
+ * 
+ * Transactions are partitioned by month and each month's segment file is
+ * memory-mapped when a query first touches it, so loading takes the same
+ * time however long the history is and rows are only turned into objects
+ * when they are used.
+ * 
+ * Totals per month, category and type are kept in an aggregate cube that
+ * is updated with every change and saved next to the transactions, so
+ * reports do not need to read the transactions of whole months.
  */
 public class FileDataManager implements DataManager {
-    // ArrayList to store transactions (ArrayList usage)
-    private List<Transaction> transactions;
+    // Transactions, partitioned by month
+    private TransactionStore transactions;
+    private AggregateCube aggregates = new AggregateCube();
+    private BalanceIndex balances; // running balance by date, null until first used
     private List<Budget> budgets;
+    private final BudgetIndex budgetIndex = new BudgetIndex(); // keeps each budget's spent amount current
     private List<Category> customCategories;
     private UserPreferences userPreferences;
     
     private final String DATA_DIR = System.getProperty("user.home") + File.separator + "FinanceTracker";
+    private final String TRANSACTIONS_DIR = DATA_DIR + File.separator + "transactions";
     private final String TRANSACTIONS_FILE = DATA_DIR + File.separator + "transactions.dat";
     private final String BUDGETS_FILE = DATA_DIR + File.separator + "budgets.dat";
     private final String CATEGORIES_FILE = DATA_DIR + File.separator + "categories.dat";
     private final String PREFERENCES_FILE = DATA_DIR + File.separator + "preferences.dat";
+    private final String JOURNAL_FILE = DATA_DIR + File.separator + "transactions.journal";
+    private final String AGGREGATES_FILE = DATA_DIR + File.separator + "aggregates.dat";
+    
+    // Number of journal records after which the transaction snapshot is rewritten
+    private static final int JOURNAL_COMPACTION_THRESHOLD = 500;
+    
+    // Write-ahead journal of transaction mutations since the last snapshot
+    private final TransactionJournal journal;
+    // Set when journal records could not be replayed; the journal is then
+    // kept so they are replayed again on the next load
+    private boolean journalIncomplete;
+
+    
+    /**
+     * The files managed by this class, used for dirty tracking
+     */
+    private enum DataFile {
+        TRANSACTIONS, AGGREGATES, BUDGETS, CATEGORIES, PREFERENCES
+    }
+    
+    // Files whose in-memory contents differ from what is on disk
+    private final Set<DataFile> dirtyFiles = EnumSet.noneOf(DataFile.class);
+    
+    // Maximum time a change waits in memory before it is written
+    private static final long WRITE_BEHIND_DELAY_MS = 2000;
+    
+    // Background thread performing all file writes, in order
+    private final ScheduledExecutorService writer;
+    
+    // Transaction changes not yet in the journal, by id; a null value is a delete
+    private final Map<String, Transaction> pendingTransactions = new LinkedHashMap<>();
+    
+    private boolean writeBehind;
+    private boolean flushScheduled;
+    private boolean writeInProgress;
+    private boolean reportedPending;
+    private final List<PersistenceListener> persistenceListeners = new CopyOnWriteArrayList<>();
+    
+    // Incremented with every transaction change; the months changed since
+    // transaction listeners were last told, or all of them after a reload
+    private long modificationVersion;
+    private final Set<YearMonth> unreportedMonths = new HashSet<>();
+    private boolean unreportedChange;
+    private boolean unreportedReload;
+    private final List<TransactionListener> transactionListeners = new CopyOnWriteArrayList<>();
+    private final List<BudgetListener> budgetListeners = new CopyOnWriteArrayList<>();
     
     // Singleton pattern (Static keyword)
     private static FileDataManager instance;
@@ -37,10 +112,16 @@ public class FileDataManager implements DataManager {
      * Private constructor for singleton pattern
      */
     private FileDataManager() {
-        this.transactions = new ArrayList<>();
+        this.transactions = TransactionStore.open(new File(TRANSACTIONS_DIR));
         this.budgets = new ArrayList<>();
         this.customCategories = new ArrayList<>();
         this.userPreferences = new UserPreferences();
+        this.journal = new TransactionJournal(JOURNAL_FILE);
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "FinanceTracker-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
         
         // Create data directory if it doesn't exist
         File dataDir = new File(DATA_DIR);
@@ -51,6 +132,9 @@ public class FileDataManager implements DataManager {
         
         // Load data from files
         loadData();
+        
+        // Write anything still pending when the application exits
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "FinanceTracker-shutdown"));
     }
     
     /**
@@ -65,21 +149,37 @@ public class FileDataManager implements DataManager {
     }
     
     @Override
-    public List<Transaction> getTransactions() {
-        return new ArrayList<>(transactions);
+    public synchronized List<Transaction> getTransactions() {
+        return transactions.toList();
+    }
+    
+    @Override
+    public synchronized List<Transaction> getTransactions(LocalDate startDate, LocalDate endDate) {
+        return transactions.inRange(startDate, endDate);
+    }
+    
+    @Override
+    public synchronized List<Transaction> getRecentTransactions(int count) {
+        return transactions.mostRecent(count);
     }
     
     @Override
-    public List<Transaction> getAllTransactions() {
-        return new ArrayList<>(transactions);
+    public synchronized List<Transaction> getAllTransactions() {
+        return transactions.toList();
     }
     
     @Override
     public void addTransaction(Transaction transaction) {
-        if (transaction != null) {
-            transactions.add(transaction);
-            saveData();
+        if (transaction == null) return;
+        
+        synchronized (this) {
+            Transaction previous = transactions.get(transaction.getId());
+            transactions.put(transaction);
+            transactionChanged(previous, transaction);
+            pendingTransactions.put(transaction.getId(), transaction);
         }
+        fireTransactionsChanged();
+        requestWrite();
     }
     
     @Override
@@ -91,79 +191,261 @@ public class FileDataManager implements DataManager {
     public void updateTransaction(Transaction transaction) {
         if (transaction == null) return;
         
-        for (int i = 0; i < transactions.size(); i++) {
-            // Transaction ID is always a String as defined in the Transaction class
-            if (transactions.get(i).getId().equals(transaction.getId())) {
-                transactions.set(i, transaction);
-                saveData();
-                return;
-            }
+        synchronized (this) {
+            Transaction previous = transactions.get(transaction.getId());
+            if (previous == null) return;
+            
+            transactions.replace(transaction);
+            transactionChanged(previous, transaction);
+            pendingTransactions.put(transaction.getId(), transaction);
         }
+        fireTransactionsChanged();
+        requestWrite();
     }
     
     @Override
     public void deleteTransaction(String transactionId) {
-        if (transactionId != null) {
-            transactions.removeIf(t -> transactionId.equals(t.getId()));
-            saveData();
+        if (transactionId == null) return;
+        
+        synchronized (this) {
+            Transaction previous = transactions.get(transactionId);
+            if (previous == null) return;
+            
+            transactions.remove(transactionId);
+            transactionChanged(previous, null);
+            pendingTransactions.put(transactionId, null);
         }
+        fireTransactionsChanged();
+        requestWrite();
     }
     
     @Override
-    public Transaction getTransactionById(String id) {
-        for (Transaction transaction : transactions) {
-            if (transaction.getId().equals(id)) {
-                return transaction;
+    public synchronized Transaction getTransactionById(String id) {
+        return transactions.get(id);
+    }
+    
+    /**
+     * Bring the aggregates, balances and budgets up to date with a change and note
+     * the months it touched for the transaction listeners
+     * 
+     * @param previous the transaction before the change, or null if it was added
+     * @param current the transaction after the change, or null if it was deleted
+     */
+    private void transactionChanged(Transaction previous, Transaction current) {
+        aggregates.remove(previous);
+        aggregates.add(current);
+        dirtyFiles.add(DataFile.AGGREGATES);
+        
+        if (balances != null) {
+            balances.remove(previous);
+            balances.add(current);
+        }
+        budgetIndex.remove(previous);
+        budgetIndex.add(current);
+        
+        modificationVersion++;
+        unreportedChange = true;
+        for (Transaction transaction : new Transaction[] {previous, current}) {
+            if (transaction != null && transaction.getDate() != null) {
+                unreportedMonths.add(YearMonth.from(transaction.getDate()));
             }
         }
-        return null;
     }
     
     /**
-     * Load transactions from storage
-     * 
-     * @return List of all transactions
+     * Note that all transactions were replaced
      */
+    private void transactionsReloaded() {
+        modificationVersion++;
+        unreportedChange = true;
+        unreportedReload = true;
+    }
+    
     @Override
-    public List<Transaction> loadTransactions() {
-        // Check if transactions list is already loaded
-        if (transactions.isEmpty()) {
-            try {
-                File file = new File(TRANSACTIONS_FILE);
-                if (file.exists()) {
-                    try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-                        @SuppressWarnings("unchecked")
-                        List<Transaction> loadedTransactions = (List<Transaction>) ois.readObject();
-                        transactions = loadedTransactions;
-                    }
+    public synchronized long getModificationVersion() {
+        return modificationVersion;
+    }
+    
+    @Override
+    public void addTransactionListener(TransactionListener listener) {
+        transactionListeners.add(listener);
+    }
+    
+    @Override
+    public void removeTransactionListener(TransactionListener listener) {
+        transactionListeners.remove(listener);
+    }
+    
+    /**
+     * Tell the transaction listeners about changes not reported yet.
+     * Called without holding the lock, after the changes are made.
+     */
+    private void fireTransactionsChanged() {
+        long version;
+        Set<YearMonth> months;
+        synchronized (this) {
+            if (!unreportedChange) return;
+            version = modificationVersion;
+            months = unreportedReload ? null : Collections.unmodifiableSet(new HashSet<>(unreportedMonths));
+            unreportedMonths.clear();
+            unreportedChange = false;
+            unreportedReload = false;
+        }
+        for (TransactionListener listener : transactionListeners) {
+            listener.transactionsChanged(version, months);
+        }
+    }
+    
+    @Override
+    public synchronized double getBalanceBefore(LocalDate date) {
+        return balances().balanceBefore(date.toEpochDay()) / 100.0;
+    }
+    
+    @Override
+    public synchronized double getTotalBalance() {
+        return balances().total() / 100.0;
+    }
+    
+    /**
+     * Get the balance index, building it from the amount columns the first time
+     */
+    private BalanceIndex balances() {
+        if (balances == null) {
+            balances = new BalanceIndex();
+            transactions.forEachAmount(balances);
+        }
+        return balances;
+    }
+    
+    @Override
+    public synchronized AggregateCell getAggregate(YearMonth month, Category category, TransactionType type) {
+        refreshAggregates(month);
+        return aggregates.cell(month, category, type);
+    }
+    
+    @Override
+    public synchronized List<AggregateCell> getAggregates(LocalDate startDate, LocalDate endDate) {
+        List<AggregateCell> result = new ArrayList<>();
+        YearMonth first = startDate == null ? aggregates.firstMonth() : YearMonth.from(startDate);
+        YearMonth last = endDate == null ? aggregates.lastMonth() : YearMonth.from(endDate);
+        if (first == null || last == null) return result;
+        
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            LocalDate from = month.atDay(1);
+            LocalDate to = month.atEndOfMonth();
+            if (startDate != null && startDate.isAfter(from)) from = startDate;
+            if (endDate != null && endDate.isBefore(to)) to = endDate;
+            
+            if (from.getDayOfMonth() == 1 && to.equals(month.atEndOfMonth())) {
+                refreshAggregates(month);
+                result.addAll(aggregates.cells(month));
+            } else {
+                // Only part of the month is in range, total its transactions
+                AggregateCube partial = new AggregateCube();
+                transactions.aggregateRange(from, to, partial);
+                result.addAll(partial.cells(month));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Recompute a month of the aggregate cube if a delete left its
+     * minimum or maximum unknown
+     */
+    private void refreshAggregates(YearMonth month) {
+        if (aggregates.isStale(month)) {
+            aggregates.rebuild(month, transactions.inRange(month.atDay(1), month.atEndOfMonth()));
+        }
+    }
+    
+    /**
+     * Recompute the aggregate cube from all transactions
+     */
+    private void rebuildAggregates() {
+        aggregates = new AggregateCube();
+        transactions.forEachAmount(aggregates::add);
+        dirtyFiles.add(DataFile.AGGREGATES);
+    }
+    
+    /**
+     * Get a value identifying the transaction files on disk, stored with
+     * the aggregate cube to tell whether the cube matches them
+     */
+    private long aggregateStamp() {
+        long stamp;
+        synchronized (this) {
+            stamp = transactions.fileStamp();
+        }
+        return stamp * 31 + journal.length();
+    }
+    
+    /**
+     * Replay journal records written since the last snapshot
+     */
+    private void replayJournal() {
+        journalIncomplete = false;
+        journal.replay(new TransactionJournal.Replay() {
+            @Override
+            public void put(Transaction transaction) {
+                try {
+                    transactions.put(transaction);
+                } catch (UncheckedIOException e) {
+                    skipped(e);
                 }
-            } catch (IOException | ClassNotFoundException e) {
-                System.err.println("Error loading transactions: " + e.getMessage());
-                // Initialize with empty list if there's an error
-                transactions = new ArrayList<>();
             }
+            
+            @Override
+            public void delete(String transactionId) {
+                try {
+                    transactions.remove(transactionId);
+                } catch (UncheckedIOException e) {
+                    skipped(e);
+                }
+            }
+            
+            private void skipped(UncheckedIOException e) {
+                System.err.println("Error replaying transaction journal: " + e.getMessage());
+                journalIncomplete = true;
+            }
+        });
+        if (journal.isDamaged()) {
+            journalIncomplete = true;
         }
-        
+    }
+    
+    /**
+     * Load transactions from storage
+     * 
+     * Files are read once by loadData(); afterwards memory is authoritative
+     * because the files may lag behind by up to the write-behind delay.
+     * 
+     * @return List of all transactions
+     */
+    @Override
+    public synchronized List<Transaction> loadTransactions() {
         // Return a defensive copy of the transactions list
-        return new ArrayList<>(transactions);
+        return transactions.toList();
     }
     
     @Override
-    public List<Category> getCategories() {
+    public synchronized List<Category> getCategories() {
         return new ArrayList<>(customCategories);
     }
     
     @Override
-    public List<Category> getAllCategories() {
+    public synchronized List<Category> getAllCategories() {
         return new ArrayList<>(customCategories);
     }
     
     @Override
     public void addCategory(Category category) {
-        if (category != null) {
+        if (category == null) return;
+        
+        synchronized (this) {
             customCategories.add(category);
-            saveData();
         }
+        saveChanged(DataFile.CATEGORIES);
     }
     
     @Override
@@ -175,30 +457,38 @@ public class FileDataManager implements DataManager {
     public void updateCategory(Category category) {
         if (category == null) return;
         
-        for (int i = 0; i < customCategories.size(); i++) {
-            if (customCategories.get(i).getId() == category.getId()) {
-                customCategories.set(i, category);
-                saveData();
-                return;
-            } else if (customCategories.get(i).getName().equals(category.getName())) {
-                customCategories.set(i, category);
-                saveData();
-                return;
+        synchronized (this) {
+            int index = -1;
+            for (int i = 0; i < customCategories.size(); i++) {
+                if (customCategories.get(i).getId() == category.getId() ||
+                    customCategories.get(i).getName().equals(category.getName())) {
+                    index = i;
+                    break;
+                }
             }
+            if (index == -1) return;
+            
+            customCategories.set(index, category);
         }
+        CategoryRegistry.register(category);
+        saveChanged(DataFile.CATEGORIES);
     }
     
 
     @Override
     public void deleteCategory(int categoryId) {
-        customCategories.removeIf(c -> c.getId() == categoryId);
-        saveData();
+        synchronized (this) {
+            if (!customCategories.removeIf(c -> c.getId() == categoryId)) return;
+        }
+        saveChanged(DataFile.CATEGORIES);
     }
     
     @Override
     public void deleteCategory(Category category) {
-        customCategories.removeIf(c -> c.getName().equals(category.getName()));
-        saveData();
+        synchronized (this) {
+            if (!customCategories.removeIf(c -> c.getName().equals(category.getName()))) return;
+        }
+        saveChanged(DataFile.CATEGORIES);
     }
     
     /**
@@ -208,152 +498,534 @@ public class FileDataManager implements DataManager {
      */
     @Override
     public List<Category> loadCategories() {
-        // Check if categories list is already loaded
-        if (customCategories.isEmpty()) {
-            try {
-                File file = new File(CATEGORIES_FILE);
-                if (file.exists()) {
-                    try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-                        @SuppressWarnings("unchecked")
-                        List<Category> loadedCategories = (List<Category>) ois.readObject();
-                        customCategories = loadedCategories;
-                    }
-                } else {
-                    // Initialize with default categories if file doesn't exist
-                    initializeDefaultCategories();
-                }
-            } catch (IOException | ClassNotFoundException e) {
-                System.err.println("Error loading categories: " + e.getMessage());
-                // Initialize with default categories if there's an error
+        List<Category> result;
+        synchronized (this) {
+            // Fall back to the default categories if all were removed
+            if (customCategories.isEmpty()) {
                 initializeDefaultCategories();
             }
+            
+            // Return a defensive copy of the categories list
+            result = new ArrayList<>(customCategories);
         }
-        
-        // Return a defensive copy of the categories list
-        return new ArrayList<>(customCategories);
+        requestWrite();
+        return result;
     }
     
     @Override
     public void saveBudget(Budget budget) {
-        budgets.add(budget);
-        saveData();
+        synchronized (this) {
+            budgets.add(budget);
+            budgetIndex.rebuild(budgets, aggregates);
+        }
+        fireBudgetsChanged();
+        saveChanged(DataFile.BUDGETS);
     }
     
     @Override
     public void updateBudget(Budget budget) {
-        for (int i = 0; i < budgets.size(); i++) {
-            Budget existing = budgets.get(i);
-            if (existing.getPeriod().equals(budget.getPeriod()) && 
-                existing.getCategory().equals(budget.getCategory())) {
-                budgets.set(i, budget);
-                saveData();
-                return;
+        synchronized (this) {
+            int index = -1;
+            for (int i = 0; i < budgets.size(); i++) {
+                Budget existing = budgets.get(i);
+                if (existing.getPeriod().equals(budget.getPeriod()) && 
+                    existing.getCategory().equals(budget.getCategory())) {
+                    index = i;
+                    break;
+                }
             }
+            if (index == -1) return;
+            
+            budgets.set(index, budget);
+            budgetIndex.rebuild(budgets, aggregates);
         }
+        fireBudgetsChanged();
+        saveChanged(DataFile.BUDGETS);
     }
     
     @Override
     public void deleteBudget(Budget budget) {
-        budgets.removeIf(b -> 
-            b.getPeriod().equals(budget.getPeriod()) && 
-            b.getCategory().equals(budget.getCategory()));
-        saveData();
+        synchronized (this) {
+            boolean removed = budgets.removeIf(b -> 
+                b.getPeriod().equals(budget.getPeriod()) && 
+                b.getCategory().equals(budget.getCategory()));
+            if (!removed) return;
+            budgetIndex.rebuild(budgets, aggregates);
+        }
+        fireBudgetsChanged();
+        saveChanged(DataFile.BUDGETS);
+    }
+    
+    @Override
+    public void addBudgetListener(BudgetListener listener) {
+        budgetListeners.add(listener);
     }
     
     @Override
-    public List<Budget> getAllBudgets() {
+    public void removeBudgetListener(BudgetListener listener) {
+        budgetListeners.remove(listener);
+    }
+    
+    /**
+     * Tell the budget listeners about a change. Called without holding the
+     * lock, after the change is made.
+     */
+    private void fireBudgetsChanged() {
+        for (BudgetListener listener : budgetListeners) {
+            listener.budgetsChanged();
+        }
+    }
+    
+    @Override
+    public synchronized List<Budget> getAllBudgets() {
         return new ArrayList<>(budgets);
     }
     
+    @Override
+    public synchronized List<Budget> getBudgets(YearMonth period) {
+        return budgetIndex.get(period);
+    }
+    
     /**
      * Load budgets from storage
      * 
      * @return List of all budgets
      */
     @Override
-    public List<Budget> loadBudgets() {
-        // Check if budgets list is already loaded
-        if (budgets.isEmpty()) {
-            try {
-                File file = new File(BUDGETS_FILE);
-                if (file.exists()) {
-                    try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-                        @SuppressWarnings("unchecked")
-                        List<Budget> loadedBudgets = (List<Budget>) ois.readObject();
-                        budgets = loadedBudgets;
-                    }
-                }
-            } catch (IOException | ClassNotFoundException e) {
-                System.err.println("Error loading budgets: " + e.getMessage());
-                // Initialize with empty list if there's an error
-                budgets = new ArrayList<>();
-            }
-        }
-        
+    public synchronized List<Budget> loadBudgets() {
         // Return a defensive copy of the budgets list
         return new ArrayList<>(budgets);
     }
     
     @Override
     public void saveUserPreferences(UserPreferences preferences) {
-        this.userPreferences = preferences;
-        saveData();
+        synchronized (this) {
+            this.userPreferences = preferences;
+            this.writeBehind = preferences.isAutoSave();
+        }
+        saveChanged(DataFile.PREFERENCES);
     }
     
     @Override
-    public UserPreferences loadUserPreferences() {
+    public synchronized UserPreferences loadUserPreferences() {
         return userPreferences;
     }
     
 
 
+    /**
+     * Mark a file as changed and write the changed files
+     */
+    private void saveChanged(DataFile file) {
+        synchronized (this) {
+            dirtyFiles.add(file);
+        }
+        requestWrite();
+    }
+    
+    /**
+     * Write pending changes now in immediate mode, or make sure a deferred
+     * flush is scheduled in write-behind mode. Must not be called while
+     * holding this object's lock since it may wait for the writer thread.
+     */
+    private void requestWrite() {
+        boolean deferred;
+        synchronized (this) {
+            if (pendingTransactions.isEmpty() && dirtyFiles.isEmpty()) return;
+            
+            deferred = writeBehind;
+            if (deferred && !flushScheduled) {
+                try {
+                    writer.schedule(this::writePendingChanges, WRITE_BEHIND_DELAY_MS, TimeUnit.MILLISECONDS);
+                    flushScheduled = true;
+                } catch (RejectedExecutionException e) {
+                    // Writer has been closed, write on the calling thread instead
+                    deferred = false;
+                }
+            }
+        }
+        
+        firePendingWritesChanged();
+        if (!deferred) {
+            flush();
+        }
+    }
+    
+    /**
+     * Save all changed data now, waiting until it is written
+     */
     @Override
     public void saveData() {
+        flush();
+    }
+    
+    @Override
+    public void flush() {
         try {
-            // Save transactions
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(TRANSACTIONS_FILE))) {
-                oos.writeObject(transactions);
-            }
+            writer.submit(this::writePendingChanges).get();
+        } catch (RejectedExecutionException e) {
+            // Writer has been closed, write on the calling thread instead
+            writePendingChanges();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error saving data: " + e.getCause().getMessage());
+        }
+    }
+    
+    @Override
+    public void close() {
+        flush();
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        synchronized (this) {
+            journal.close();
+        }
+    }
+    
+    @Override
+    public synchronized boolean hasPendingWrites() {
+        return writeInProgress || !pendingTransactions.isEmpty() || !dirtyFiles.isEmpty();
+    }
+    
+    @Override
+    public void addPersistenceListener(PersistenceListener listener) {
+        persistenceListeners.add(listener);
+    }
+    
+    @Override
+    public void removePersistenceListener(PersistenceListener listener) {
+        persistenceListeners.remove(listener);
+    }
+    
+    /**
+     * Tell listeners when the pending-write status changes
+     */
+    private void firePendingWritesChanged() {
+        boolean pending;
+        synchronized (this) {
+            pending = hasPendingWrites();
+            if (pending == reportedPending) return;
+            reportedPending = pending;
+        }
+        for (PersistenceListener listener : persistenceListeners) {
+            listener.pendingWritesChanged(pending);
+        }
+    }
+    
+    /**
+     * Write every change made since the last flush. Runs on the writer thread
+     * (or the caller once the writer is closed). The work is collected under
+     * the lock and written without it, so the UI never waits on disk I/O.
+     * Transaction edits are appended to the journal; the segments of the
+     * months that changed are only rewritten when transactions are marked
+     * dirty (import, journal failure) or when the journal has grown long
+     * enough to be compacted.
+     */
+    private void writePendingChanges() {
+        Map<String, Transaction> transactionChanges;
+        Set<DataFile> files = EnumSet.noneOf(DataFile.class);
+        List<TransactionStore.SegmentSnapshot> segmentSnapshots = null;
+        boolean keepJournal;
+        AggregateCube aggregateSnapshot = null;
+        List<Budget> budgetSnapshot = null;
+        List<Category> categorySnapshot = null;
+        UserPreferences preferencesSnapshot = null;
+        
+        synchronized (this) {
+            flushScheduled = false;
+            if (pendingTransactions.isEmpty() && dirtyFiles.isEmpty()) return;
             
-            // Save budgets
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(BUDGETS_FILE))) {
-                oos.writeObject(budgets);
+            writeInProgress = true;
+            keepJournal = journalIncomplete;
+            transactionChanges = new LinkedHashMap<>(pendingTransactions);
+            pendingTransactions.clear();
+            
+            if (journal.getRecordCount() + transactionChanges.size() >= JOURNAL_COMPACTION_THRESHOLD) {
+                dirtyFiles.add(DataFile.TRANSACTIONS);
             }
+            files.addAll(dirtyFiles);
+            dirtyFiles.clear();
             
-            // Save categories
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(CATEGORIES_FILE))) {
-                oos.writeObject(customCategories);
+            if (files.contains(DataFile.TRANSACTIONS)) {
+                segmentSnapshots = transactions.dirtySegments();
+            }
+            if (files.contains(DataFile.AGGREGATES)) {
+                aggregateSnapshot = aggregates.copy();
+            }
+            if (files.contains(DataFile.BUDGETS)) {
+                budgetSnapshot = new ArrayList<>(budgets);
+            }
+            if (files.contains(DataFile.CATEGORIES)) {
+                categorySnapshot = new ArrayList<>(customCategories);
+            }
+            if (files.contains(DataFile.PREFERENCES)) {
+                preferencesSnapshot = userPreferences;
+            }
+        }
+        
+        // Save transactions; the changed months' segments contain every journaled change
+        boolean transactionsWritten;
+        if (segmentSnapshots != null) {
+            boolean written = true;
+            for (TransactionStore.SegmentSnapshot segment : segmentSnapshots) {
+                if (writeFile(DataFile.TRANSACTIONS, segment.getFile().getPath(),
+                        channel -> TransactionFileFormat.write(segment.toList(), channel))) {
+                    synchronized (this) {
+                        transactions.segmentWritten(segment);
+                    }
+                    segment.deletePreviousFile();
+                } else {
+                    written = false;
+                }
             }
             
-            // Save preferences
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(PREFERENCES_FILE))) {
-                oos.writeObject(userPreferences);
+            // The journal can only be dropped once nothing older overrides the segments
+            // and every record in it has been replayed
+            if (written && !keepJournal && deleteLegacySnapshots()) {
+                journal.reset();
+                transactionsWritten = true;
+            } else {
+                transactionsWritten = writeJournal(transactionChanges) && written;
+            }
+        } else {
+            transactionsWritten = writeJournal(transactionChanges);
+        }
+        
+        // Save the aggregates, stamped with the transaction files they match
+        if (aggregateSnapshot != null) {
+            if (transactionsWritten) {
+                aggregateSnapshot.setStamp(aggregateStamp());
+                writeFile(DataFile.AGGREGATES, AGGREGATES_FILE, serialized(aggregateSnapshot));
+            } else {
+                synchronized (this) {
+                    dirtyFiles.add(DataFile.AGGREGATES);
+                }
             }
+        }
+        
+        // Save budgets, categories and preferences if they changed
+        if (budgetSnapshot != null) {
+            writeFile(DataFile.BUDGETS, BUDGETS_FILE, serialized(budgetSnapshot));
+        }
+        if (categorySnapshot != null) {
+            writeFile(DataFile.CATEGORIES, CATEGORIES_FILE, serialized(categorySnapshot));
+        }
+        if (preferencesSnapshot != null) {
+            writeFile(DataFile.PREFERENCES, PREFERENCES_FILE, serialized(preferencesSnapshot));
+        }
+        
+        synchronized (this) {
+            writeInProgress = false;
+        }
+        firePendingWritesChanged();
+    }
+    
+    /**
+     * Append coalesced transaction changes to the journal
+     * 
+     * @return true if every change was written
+     */
+    private boolean writeJournal(Map<String, Transaction> changes) {
+        try {
+            for (Map.Entry<String, Transaction> change : changes.entrySet()) {
+                if (change.getValue() == null) {
+                    journal.appendDelete(change.getKey());
+                } else {
+                    journal.appendPut(change.getValue());
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing transaction journal: " + e.getMessage());
+            // Fall back to a full snapshot on the next flush so the change is not lost
+            synchronized (this) {
+                dirtyFiles.add(DataFile.TRANSACTIONS);
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * Write one data file, marking it dirty again if the write fails
+     * 
+     * @return true if the file was written
+     */
+    private boolean writeFile(DataFile file, String filePath, SnapshotWriter writer) {
+        try {
+            writeSnapshot(filePath, writer);
+            return true;
         } catch (IOException e) {
             System.err.println("Error saving data: " + e.getMessage());
             e.printStackTrace();
+            synchronized (this) {
+                dirtyFiles.add(file);
+            }
+            return false;
         }
     }
     
-    @SuppressWarnings("unchecked")
+    /**
+     * Writes the contents of one data file
+     */
+    private interface SnapshotWriter {
+        void write(FileChannel channel) throws IOException;
+    }
+    
+    /**
+     * Writer storing an object with Java serialization
+     */
+    private static SnapshotWriter serialized(Object data) {
+        return channel -> {
+            ObjectOutputStream oos = new ObjectOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+            oos.writeObject(data);
+            oos.flush();
+        };
+    }
+    
+    /**
+     * Write a file to a temporary location and move it over the target,
+     * so an interrupted write never destroys the previous snapshot
+     */
+    private void writeSnapshot(String filePath, SnapshotWriter writer) throws IOException {
+        Path target = Paths.get(filePath);
+        Path temp = Paths.get(filePath + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writer.write(channel);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Find the single-file transaction snapshots written by older versions
+     * (transactions.dat and transactions.<n>.dat), oldest first
+     */
+    private List<File> findLegacySnapshots() {
+        List<File> snapshots = new ArrayList<>();
+        File[] files = new File(DATA_DIR).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (parseSnapshotGeneration(file.getName()) >= 0) {
+                    snapshots.add(file);
+                }
+            }
+        }
+        snapshots.sort(Comparator.comparingInt(file -> parseSnapshotGeneration(file.getName())));
+        return snapshots;
+    }
+    
+    /**
+     * Delete the single-file snapshots once the month partitions hold
+     * their transactions
+     * 
+     * @return true if none are left
+     */
+    private boolean deleteLegacySnapshots() {
+        boolean deleted = true;
+        for (File file : findLegacySnapshots()) {
+            if (!file.delete()) {
+                System.err.println("Could not delete old transaction file: " + file.getAbsolutePath());
+                deleted = false;
+            }
+        }
+        return deleted;
+    }
+    
+    /**
+     * Get the generation of a single-file snapshot name
+     * 
+     * @return the generation, or -1 if the name is not a snapshot file
+     */
+    private static int parseSnapshotGeneration(String name) {
+        if (name.equals("transactions.dat")) {
+            return 0;
+        }
+        if (name.startsWith("transactions.") && name.endsWith(".dat")) {
+            try {
+                return Integer.parseInt(name.substring("transactions.".length(), name.length() - ".dat".length()));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+    
     @Override
     public void loadData() {
-        // Load transactions
+        // Make sure the files are up to date before reading them back
+        flush();
+        
+        synchronized (this) {
+            readDataFiles();
+            budgetIndex.rebuild(budgets, aggregates);
+            transactionsReloaded();
+            writeBehind = userPreferences.isAutoSave();
+        }
+        fireTransactionsChanged();
+        requestWrite();
+    }
+    
+    /**
+     * Read all data files into memory
+     */
+    @SuppressWarnings("unchecked")
+    private void readDataFiles() {
+        // Open the month partitions; their segments are mapped when first used
+        transactions = TransactionStore.open(new File(TRANSACTIONS_DIR));
+        balances = null;
+        
+        // Convert a single-file snapshot written by an older version. It
+        // overrides the partitions until all of them have been written.
+        List<File> legacySnapshots = findLegacySnapshots();
+        if (!legacySnapshots.isEmpty()) {
+            File file = legacySnapshots.get(legacySnapshots.size() - 1);
+            try {
+                if (TransactionFileFormat.isColumnar(file)) {
+                    // Read rather than map the file so it can be deleted afterwards
+                    transactions.replaceAll(new TransactionSegment(MappedTransactionFile.read(file)).toList());
+                } else {
+                    try (ObjectInputStream ois = new ObjectInputStream(
+                            new FileInputStream(file))) {
+                        transactions.replaceAll((List<Transaction>) ois.readObject());
+                    }
+                    
+                    // Keep the old file, it is deleted once converted
+                    Files.copy(file.toPath(), Paths.get(TRANSACTIONS_FILE + ".bak"),
+                        StandardCopyOption.REPLACE_EXISTING);
+                }
+                dirtyFiles.add(DataFile.TRANSACTIONS);
+            } catch (IOException | ClassNotFoundException e) {
+                System.err.println("Error loading transactions: " + e.getMessage());
+            }
+        }
+        
+        // Apply changes made since the snapshot was written
+        replayJournal();
+        
+        // Load the aggregates, recomputing them if they do not match the transactions
+        AggregateCube savedAggregates = null;
         try {
-            File file = new File(TRANSACTIONS_FILE);
-            if (file.exists()) {
+            File file = new File(AGGREGATES_FILE);
+            if (file.exists() && !dirtyFiles.contains(DataFile.TRANSACTIONS)) {
                 try (ObjectInputStream ois = new ObjectInputStream(
                         new FileInputStream(file))) {
-                    transactions = (List<Transaction>) ois.readObject();
+                    savedAggregates = (AggregateCube) ois.readObject();
                 }
             }
         } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Error loading transactions: " + e.getMessage());
-            transactions = new ArrayList<>();
+            System.err.println("Error loading aggregates: " + e.getMessage());
+        }
+        if (savedAggregates != null && savedAggregates.getStamp() == aggregateStamp()) {
+            aggregates = savedAggregates;
+        } else {
+            rebuildAggregates();
         }
         
         // Load budgets
@@ -419,14 +1091,14 @@ public class FileDataManager implements DataManager {
         customCategories.add(new Category("Entertainment", "Movies, games, etc.", TransactionType.EXPENSE));
         customCategories.add(new Category("Healthcare", "Medical expenses", TransactionType.EXPENSE));
         
-        saveData();
+        dirtyFiles.add(DataFile.CATEGORIES);
     }
     
     @Override
-    public boolean exportData(String filePath) {
+    public synchronized boolean exportData(String filePath) {
         try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filePath))) {
             Map<String, Object> data = new HashMap<>();
-            data.put("transactions", transactions);
+            data.put("transactions", transactions.toList());
             data.put("budgets", budgets);
             data.put("categories", customCategories);
             data.put("preferences", userPreferences);
@@ -445,10 +1117,22 @@ public class FileDataManager implements DataManager {
         try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filePath))) {
             Map<String, Object> data = (Map<String, Object>) ois.readObject();
             
-            transactions = (List<Transaction>) data.get("transactions");
-            budgets = (List<Budget>) data.get("budgets");
-            customCategories = (List<Category>) data.get("categories");
-            userPreferences = (UserPreferences) data.get("preferences");
+            synchronized (this) {
+                transactions.replaceAll((List<Transaction>) data.get("transactions"));
+                rebuildAggregates();
+                balances = null;
+                transactionsReloaded();
+                budgets = (List<Budget>) data.get("budgets");
+                budgetIndex.rebuild(budgets, aggregates);
+                customCategories = (List<Category>) data.get("categories");
+                userPreferences = (UserPreferences) data.get("preferences");
+                writeBehind = userPreferences.isAutoSave();
+                
+                // The snapshot replaces the journal, so pending edits are moot
+                pendingTransactions.clear();
+                dirtyFiles.addAll(EnumSet.allOf(DataFile.class));
+            }
+            fireTransactionsChanged();
             
             // Save imported data to files
             saveData();
@@ -0,0 +1,294 @@
+package com.finance.data;
+
+import com.finance.model.Category;
+import com.finance.model.Transaction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.UUID;
+
+import static com.finance.data.TransactionFileFormat.*;
+
+/**
+ * Read-only, memory-mapped view of a file in {@link TransactionFileFormat}.
+ * Mapping is constant-time regardless of the number of rows; columns are
+ * read straight from the mapped buffer and Transaction objects are only
+ * created for the rows that are asked for.
+ *
+ * Only absolute reads are used, so a mapped file can safely be read from
+ * several threads at once.
+ *
+ * A file can also be read into heap memory instead, for files that are
+ * about to be deleted: some platforms refuse to delete a mapped file.
+ */
+final class MappedTransactionFile {
+    // Rows copied into heap arrays at a time by aggregate
+    private static final int CHUNK_ROWS = 4096;
+
+    private final ByteBuffer buffer;
+    private final int rows;
+    private final boolean sortedByDate;
+    private final boolean intCents;
+    private final int stringCount;
+    private final Category[] categories;
+
+    // Start of each column and of the string table
+    private final int idHiAt;
+    private final int idLoAt;
+    private final int centsAt;
+    private final int epochDayAt;
+    private final int categoryAt;
+    private final int descriptionAt;
+    private final int notesAt;
+    private final int typeAt;
+    private final int kindAt;
+    private final int detailAt;
+    private final int flagsAt;
+    private final int stringOffsetsAt;
+    private final int stringBytesAt;
+
+    private MappedTransactionFile(File file, ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a transaction file: " + file);
+        }
+        short version = buffer.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported transaction file version " + version);
+        }
+
+        short flags = buffer.getShort(6);
+        sortedByDate = (flags & FILE_SORTED_BY_DATE) != 0;
+        intCents = (flags & FILE_INT_CENTS) != 0;
+        rows = buffer.getInt(8);
+        int categoryCount = buffer.getInt(12);
+        stringCount = buffer.getInt(16);
+        int stringBytes = buffer.getInt(20);
+
+        int categoriesAt = HEADER_SIZE;
+        idHiAt = categoriesAt + categoryCount * CATEGORY_SIZE;
+        idLoAt = idHiAt + rows * 8;
+        centsAt = idLoAt + rows * 8;
+        epochDayAt = centsAt + rows * (intCents ? 4 : 8);
+        categoryAt = epochDayAt + rows * 4;
+        descriptionAt = categoryAt + rows * 4;
+        notesAt = descriptionAt + rows * 4;
+        typeAt = notesAt + rows * 4;
+        kindAt = typeAt + rows;
+        detailAt = kindAt + rows;
+        flagsAt = detailAt + rows;
+        stringOffsetsAt = flagsAt + rows;
+        stringBytesAt = stringOffsetsAt + (stringCount + 1) * 4;
+
+        if ((long) stringBytesAt + stringBytes > buffer.capacity()) {
+            throw new IOException("Truncated transaction file: " + file);
+        }
+
+        // The category dictionary is small, decode it once
+        categories = new Category[categoryCount];
+        for (int i = 0; i < categoryCount; i++) {
+            int at = categoriesAt + i * CATEGORY_SIZE;
+            categories[i] = decodeCategory(buffer.getInt(at), string(buffer.getInt(at + 4)),
+                string(buffer.getInt(at + 8)), buffer.get(at + 12),
+                buffer.get(at + 13) != 0, buffer.getInt(at + 14));
+        }
+    }
+
+    /**
+     * Map a transaction file into memory
+     *
+     * @param file the file to map
+     * @return the mapped view
+     */
+    static MappedTransactionFile map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new MappedTransactionFile(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Read a transaction file into heap memory without mapping it
+     *
+     * @param file the file to read
+     * @return the file's contents
+     */
+    static MappedTransactionFile read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Transaction file too large: " + size + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // keep reading until the whole file is in memory
+            }
+            return new MappedTransactionFile(file, buffer);
+        }
+    }
+
+    int size() {
+        return rows;
+    }
+
+    /**
+     * Check whether rows are stored in date order
+     */
+    boolean isSortedByDate() {
+        return sortedByDate;
+    }
+
+    long cents(int row) {
+        return intCents ? buffer.getInt(centsAt + row * 4) : buffer.getLong(centsAt + row * 8);
+    }
+
+    int epochDay(int row) {
+        return buffer.getInt(epochDayAt + row * 4);
+    }
+
+    byte type(int row) {
+        return buffer.get(typeAt + row);
+    }
+
+    /**
+     * Get the category of a row from the dictionary, or null
+     */
+    Category category(int row) {
+        int category = buffer.getInt(categoryAt + row * 4);
+        return category == NONE ? null : categories[category];
+    }
+
+    /**
+     * Get the id of a row without materializing it
+     */
+    String id(int row) {
+        if ((buffer.get(flagsAt + row) & FLAG_TEXT_ID) != 0) {
+            return string((int) buffer.getLong(idLoAt + row * 8));
+        }
+        return new UUID(buffer.getLong(idHiAt + row * 8), buffer.getLong(idLoAt + row * 8)).toString();
+    }
+
+    /**
+     * Add the id of a row to an index without materializing it
+     *
+     * @param row the row
+     * @param index the index to add to
+     * @param value the value to store for the id
+     */
+    void indexId(int row, TransactionIdIndex index, int value) {
+        if ((buffer.get(flagsAt + row) & FLAG_TEXT_ID) != 0) {
+            index.put(id(row), value);
+        } else {
+            index.put(buffer.getLong(idHiAt + row * 8), buffer.getLong(idLoAt + row * 8), value);
+        }
+    }
+
+    /**
+     * Add rows to an aggregate cube without materializing them. The amount,
+     * category and type columns are copied into arrays a chunk at a time,
+     * category and type combined into one key per row, and the rows of
+     * each key present are totalled by the {@link AmountKernel}.
+     *
+     * @param from first row, inclusive
+     * @param to last row, exclusive
+     * @param month the month every one of the rows is dated in
+     * @param cube the cube to add to
+     */
+    void aggregate(int from, int to, YearMonth month, AggregateCube cube) {
+        AmountKernel kernel = AmountKernel.get();
+        LongBuffer longCents = intCents ? null : buffer.slice(centsAt, rows * 8).asLongBuffer();
+        IntBuffer narrowCents = intCents ? buffer.slice(centsAt, rows * 4).asIntBuffer() : null;
+        IntBuffer categoryColumn = buffer.slice(categoryAt, rows * 4).asIntBuffer();
+
+        int chunk = Math.min(CHUNK_ROWS, to - from);
+        long[] cents = new long[chunk];
+        int[] narrow = intCents ? new int[chunk] : null;
+        int[] keys = new int[chunk];
+        byte[] types = new byte[chunk];
+
+        // Per key: sum, count, minimum and maximum, null until the key is seen
+        long[][] totals = new long[(categories.length + 1) * 4][];
+        boolean[] present = new boolean[totals.length];
+
+        for (int start = from; start < to; start += chunk) {
+            int count = Math.min(chunk, to - start);
+            if (intCents) {
+                narrowCents.get(start, narrow, 0, count);
+                for (int i = 0; i < count; i++) {
+                    cents[i] = narrow[i];
+                }
+            } else {
+                longCents.get(start, cents, 0, count);
+            }
+            categoryColumn.get(start, keys, 0, count);
+            buffer.get(typeAt + start, types, 0, count);
+
+            for (int i = 0; i < count; i++) {
+                int key = key(keys[i], types[i]);
+                keys[i] = key;
+                present[key] = true;
+            }
+
+            for (int key = 0; key < present.length; key++) {
+                if (!present[key]) continue;
+                present[key] = false;
+                if (totals[key] == null) {
+                    totals[key] = new long[] {0, 0, Long.MAX_VALUE, Long.MIN_VALUE};
+                }
+                kernel.sumMatching(cents, keys, 0, count, key, totals[key]);
+            }
+        }
+
+        for (int key = 0; key < totals.length; key++) {
+            long[] total = totals[key];
+            if (total != null) {
+                int category = (key >> 2) - 1;
+                byte type = (key & 3) == 3 ? TYPE_NONE : (byte) (key & 3);
+                cube.add(month, category == NONE ? null : categories[category], decodeType(type),
+                    total[0], total[1], total[2], total[3]);
+            }
+        }
+    }
+
+    /**
+     * Combine a category index (NONE or 0 up) and a type byte (TYPE_NONE,
+     * TYPE_INCOME or TYPE_EXPENSE) into a small non-negative key
+     */
+    private static int key(int category, byte type) {
+        return (category + 1) << 2 | (type & 3);
+    }
+
+    /**
+     * Materialize one row as a Transaction object
+     */
+    Transaction get(int row) {
+        return decodeTransaction(id(row), cents(row), epochDay(row), category(row),
+            string(buffer.getInt(descriptionAt + row * 4)),
+            string(buffer.getInt(notesAt + row * 4)),
+            buffer.get(kindAt + row), buffer.get(detailAt + row), buffer.get(flagsAt + row));
+    }
+
+    /**
+     * Decode an entry of the string table
+     */
+    private String string(int index) {
+        if (index == NONE) return null;
+        if (index < 0 || index >= stringCount) {
+            throw new IndexOutOfBoundsException("String index " + index);
+        }
+
+        int start = buffer.getInt(stringOffsetsAt + index * 4);
+        int end = buffer.getInt(stringOffsetsAt + (index + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        buffer.get(stringBytesAt + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
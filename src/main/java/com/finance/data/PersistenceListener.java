@@ -0,0 +1,15 @@
+package com.finance.data;
+
+/**
+ * Interface for components that want to know whether changes are still
+ * waiting to be written to disk
+ */
+public interface PersistenceListener {
+    /**
+     * Called when the pending-write status may have changed.
+     * May be called from a background thread.
+     *
+     * @param pending true if some changes have not been written yet
+     */
+    void pendingWritesChanged(boolean pending);
+}
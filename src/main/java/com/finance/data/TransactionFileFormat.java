@@ -0,0 +1,374 @@
+package com.finance.data;
+
+import com.finance.model.*;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Versioned binary file format for transactions, stored column by column.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * header      int magic, short version, short flags, int rowCount,
+ *             int categoryCount, int stringCount, int stringBytes
+ * categories  categoryCount x (int id, int name, int description,
+ *             byte type, byte hasColor, int argb)
+ * columns     long idHi[], long idLo[], long or int cents[], int epochDay[],
+ *             int category[], int description[], int notes[],
+ *             byte type[], byte kind[], byte detail[], byte flags[]
+ * strings     int offsets[stringCount + 1], byte utf8[stringBytes]
+ * </pre>
+ * Strings (descriptions, notes, category names) are stored once in the
+ * string table and referenced by index; -1 stands for null. Every section
+ * has a fixed width apart from the string bytes, so a reader can locate any
+ * column without parsing the ones before it.
+ *
+ * Rows are written in date order (undated rows first) and the header flag
+ * FILE_SORTED_BY_DATE says so, letting readers binary search the date
+ * column. Files without the flag may store rows in any order.
+ *
+ * Amounts are stored as whole cents. When every amount of a file fits in
+ * an int, the header flag FILE_INT_CENTS is set and the cents column
+ * takes 4 bytes per row instead of 8.
+ *
+ * Files are read through {@link MappedTransactionFile}.
+ */
+final class TransactionFileFormat {
+    static final int MAGIC = 0x4654584E; // "FTXN"
+    static final short VERSION = 1;
+
+    static final int HEADER_SIZE = 24;
+    static final int CATEGORY_SIZE = 18;
+    static final int ROW_SIZE = 44; // with 8-byte cents
+
+    // Concrete transaction classes (kind column)
+    static final byte KIND_EXPENSE = 0;
+    static final byte KIND_INCOME = 1;
+    static final byte KIND_EXPENSE_TRANSACTION = 2;
+    static final byte KIND_INCOME_TRANSACTION = 3;
+
+    // Transaction type (type column)
+    static final byte TYPE_INCOME = 0;
+    static final byte TYPE_EXPENSE = 1;
+    static final byte TYPE_NONE = -1;
+
+    // Bits of the flags column
+    static final byte FLAG_ESSENTIAL = 1;
+    static final byte FLAG_TEXT_ID = 2; // id is not a UUID, idLo holds a string index
+
+    // Bits of the header flags
+    static final short FILE_SORTED_BY_DATE = 1;
+    static final short FILE_INT_CENTS = 2;
+
+    static final int NONE = -1;
+    static final int NO_DATE = Integer.MIN_VALUE;
+
+    private TransactionFileFormat() {}
+
+    /**
+     * Check whether a file was written in this format
+     *
+     * @param file the file to check
+     * @return true if the file starts with the format's magic number
+     */
+    static boolean isColumnar(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) != -1) {
+                // keep reading until the magic number is complete
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Encode transactions and write them to a channel, in date order
+     *
+     * @param unsorted the transactions to store
+     * @param channel destination of the encoded file
+     */
+    static void write(List<Transaction> unsorted, WritableByteChannel channel) throws IOException {
+        List<Transaction> transactions = new ArrayList<>(unsorted);
+        transactions.sort(Comparator.comparing(Transaction::getDate,
+            Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        int rows = transactions.size();
+        StringTable strings = new StringTable();
+        Map<Category, Integer> categoryIndex = new IdentityHashMap<>();
+        List<Category> categories = new ArrayList<>();
+
+        long[] idHi = new long[rows];
+        long[] idLo = new long[rows];
+        long[] cents = new long[rows];
+        int[] epochDay = new int[rows];
+        int[] category = new int[rows];
+        int[] description = new int[rows];
+        int[] notes = new int[rows];
+        byte[] type = new byte[rows];
+        byte[] kind = new byte[rows];
+        byte[] detail = new byte[rows];
+        byte[] flags = new byte[rows];
+
+        for (int i = 0; i < rows; i++) {
+            Transaction t = transactions.get(i);
+
+            UUID uuid = parseUuid(t.getId());
+            if (uuid != null) {
+                idHi[i] = uuid.getMostSignificantBits();
+                idLo[i] = uuid.getLeastSignificantBits();
+            } else {
+                idLo[i] = strings.indexOf(t.getId());
+                flags[i] |= FLAG_TEXT_ID;
+            }
+
+            cents[i] = t.getAmountCents();
+            epochDay[i] = t.getDate() == null ? NO_DATE : (int) t.getDate().toEpochDay();
+            description[i] = strings.indexOf(t.getDescription());
+            notes[i] = strings.indexOf(t.getNotes());
+            type[i] = encodeType(t.getType());
+
+            Category c = t.getCategory();
+            if (c == null) {
+                category[i] = NONE;
+            } else {
+                Integer index = categoryIndex.get(c);
+                if (index == null) {
+                    index = categories.size();
+                    categoryIndex.put(c, index);
+                    categories.add(c);
+                }
+                category[i] = index;
+            }
+
+            kind[i] = encodeKind(t);
+            detail[i] = encodeDetail(t);
+            flags[i] |= encodeFlags(t);
+        }
+
+        int[] categoryNames = new int[categories.size()];
+        int[] categoryDescriptions = new int[categories.size()];
+        for (int i = 0; i < categories.size(); i++) {
+            categoryNames[i] = strings.indexOf(categories.get(i).getName());
+            categoryDescriptions[i] = strings.indexOf(categories.get(i).getDescription());
+        }
+
+        boolean intCents = true;
+        for (long amount : cents) {
+            if (amount != (int) amount) {
+                intCents = false;
+                break;
+            }
+        }
+
+        long size = HEADER_SIZE
+            + (long) categories.size() * CATEGORY_SIZE
+            + (long) rows * (intCents ? ROW_SIZE - 4 : ROW_SIZE)
+            + (long) (strings.size() + 1) * 4
+            + strings.byteCount();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Too many transactions to store in one file");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) (FILE_SORTED_BY_DATE | (intCents ? FILE_INT_CENTS : 0)));
+        buffer.putInt(rows);
+        buffer.putInt(categories.size());
+        buffer.putInt(strings.size());
+        buffer.putInt(strings.byteCount());
+
+        for (int i = 0; i < categories.size(); i++) {
+            Category c = categories.get(i);
+            buffer.putInt(c.getId());
+            buffer.putInt(categoryNames[i]);
+            buffer.putInt(categoryDescriptions[i]);
+            buffer.put(encodeType(c.getType()));
+            buffer.put((byte) (c.getColor() != null ? 1 : 0));
+            buffer.putInt(c.getColor() != null ? c.getColor().getRGB() : 0);
+        }
+
+        putLongs(buffer, idHi);
+        putLongs(buffer, idLo);
+        if (intCents) {
+            for (long amount : cents) {
+                buffer.putInt((int) amount);
+            }
+        } else {
+            putLongs(buffer, cents);
+        }
+        putInts(buffer, epochDay);
+        putInts(buffer, category);
+        putInts(buffer, description);
+        putInts(buffer, notes);
+        buffer.put(type);
+        buffer.put(kind);
+        buffer.put(detail);
+        buffer.put(flags);
+
+        strings.writeTo(buffer);
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Rebuild a category from its stored fields
+     */
+    static Category decodeCategory(int id, String name, String description,
+                                   byte type, boolean hasColor, int argb) {
+        Category category = new Category(name, description,
+            hasColor ? new Color(argb, true) : null, decodeType(type));
+        category.setId(id);
+        return CategoryRegistry.intern(category);
+    }
+
+    /**
+     * Rebuild a transaction of the stored concrete class from its stored fields
+     */
+    static Transaction decodeTransaction(String id, long cents, int epochDay, Category category,
+                                         String description, String notes,
+                                         byte kind, byte detail, byte flags) {
+        double amount = Money.toAmount(cents);
+        LocalDate date = epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+
+        Transaction transaction;
+        switch (kind) {
+            case KIND_EXPENSE:
+                transaction = new Expense(id, amount, description, date, category,
+                    detail == NONE ? null : PaymentMethod.values()[detail],
+                    (flags & FLAG_ESSENTIAL) != 0);
+                break;
+            case KIND_INCOME:
+                transaction = new Income(id, amount, description, date, category,
+                    detail == NONE ? null : IncomeSource.values()[detail]);
+                break;
+            case KIND_INCOME_TRANSACTION:
+                transaction = new IncomeTransaction(id, amount, description, date, category);
+                break;
+            default:
+                transaction = new ExpenseTransaction(id, amount, description, date, category);
+                break;
+        }
+        transaction.setAmountCents(cents);
+        transaction.setNotes(notes);
+        return transaction;
+    }
+
+    /**
+     * Get the kind column value for the concrete class of a transaction
+     */
+    static byte encodeKind(Transaction transaction) {
+        if (transaction instanceof Expense) return KIND_EXPENSE;
+        if (transaction instanceof Income) return KIND_INCOME;
+        return transaction.getType() == TransactionType.INCOME
+            ? KIND_INCOME_TRANSACTION : KIND_EXPENSE_TRANSACTION;
+    }
+
+    /**
+     * Get the detail column value: the payment method of an Expense or the
+     * source of an Income, NONE if there is none
+     */
+    static byte encodeDetail(Transaction transaction) {
+        if (transaction instanceof Expense && ((Expense) transaction).getPaymentMethod() != null) {
+            return (byte) ((Expense) transaction).getPaymentMethod().ordinal();
+        }
+        if (transaction instanceof Income && ((Income) transaction).getSource() != null) {
+            return (byte) ((Income) transaction).getSource().ordinal();
+        }
+        return (byte) NONE;
+    }
+
+    /**
+     * Get the flags column value, apart from FLAG_TEXT_ID
+     */
+    static byte encodeFlags(Transaction transaction) {
+        return transaction instanceof Expense && ((Expense) transaction).isEssential() ? FLAG_ESSENTIAL : 0;
+    }
+
+    static byte encodeType(TransactionType type) {
+        if (type == null) return TYPE_NONE;
+        return type == TransactionType.INCOME ? TYPE_INCOME : TYPE_EXPENSE;
+    }
+
+    static TransactionType decodeType(byte type) {
+        if (type == TYPE_NONE) return null;
+        return type == TYPE_INCOME ? TransactionType.INCOME : TransactionType.EXPENSE;
+    }
+
+    /**
+     * Parse an id as a UUID if it round-trips exactly
+     */
+    static UUID parseUuid(String id) {
+        if (id == null) return null;
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void putLongs(ByteBuffer buffer, long[] values) {
+        buffer.asLongBuffer().put(values);
+        buffer.position(buffer.position() + values.length * 8);
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + values.length * 4);
+    }
+
+    /**
+     * Deduplicating table of UTF-8 encoded strings
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+        private int byteCount;
+
+        int indexOf(String value) {
+            if (value == null) return NONE;
+            Integer index = indexes.get(value);
+            if (index == null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                index = encoded.size();
+                indexes.put(value, index);
+                encoded.add(bytes);
+                byteCount += bytes.length;
+            }
+            return index;
+        }
+
+        int size() {
+            return encoded.size();
+        }
+
+        int byteCount() {
+            return byteCount;
+        }
+
+        void writeTo(ByteBuffer buffer) {
+            int offset = 0;
+            for (byte[] bytes : encoded) {
+                buffer.putInt(offset);
+                offset += bytes.length;
+            }
+            buffer.putInt(offset);
+            for (byte[] bytes : encoded) {
+                buffer.put(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.finance.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Hash index from transaction id to an int (a partition or row number).
+ * UUID ids, which is every id this application creates, are kept as their
+ * two 64-bit halves in an open-addressing table, so indexing a long
+ * history does not need a String and a map entry per transaction. Any
+ * other id falls back to a regular map.
+ */
+final class TransactionIdIndex {
+    static final int MISSING = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keysHi = new long[INITIAL_CAPACITY];
+    private long[] keysLo = new long[INITIAL_CAPACITY];
+    private int[] values = newValues(INITIAL_CAPACITY); // MISSING marks a free slot
+    private int size;
+    private final Map<String, Integer> textIds = new HashMap<>();
+
+    /**
+     * Look up an id
+     *
+     * @return the value stored for the id, or MISSING
+     */
+    int get(String id) {
+        UUID uuid = TransactionFileFormat.parseUuid(id);
+        if (uuid == null) {
+            Integer value = id == null ? null : textIds.get(id);
+            return value == null ? MISSING : value;
+        }
+        return get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Look up a UUID id by its two halves
+     *
+     * @return the value stored for the id, or MISSING
+     */
+    int get(long hi, long lo) {
+        int mask = values.length - 1;
+        for (int slot = hash(hi, lo) & mask; values[slot] != MISSING; slot = (slot + 1) & mask) {
+            if (keysHi[slot] == hi && keysLo[slot] == lo) {
+                return values[slot];
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * Store a value for an id, replacing any previous value
+     */
+    void put(String id, int value) {
+        UUID uuid = TransactionFileFormat.parseUuid(id);
+        if (uuid == null) {
+            textIds.put(id, value);
+        } else {
+            put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), value);
+        }
+    }
+
+    /**
+     * Store a value for a UUID id given by its two halves
+     */
+    void put(long hi, long lo, int value) {
+        if ((size + 1) * 4 > values.length * 3) {
+            resize(values.length * 2);
+        }
+
+        int mask = values.length - 1;
+        int slot = hash(hi, lo) & mask;
+        while (values[slot] != MISSING) {
+            if (keysHi[slot] == hi && keysLo[slot] == lo) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keysHi[slot] = hi;
+        keysLo[slot] = lo;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * Remove an id from the index
+     */
+    void remove(String id) {
+        UUID uuid = TransactionFileFormat.parseUuid(id);
+        if (uuid == null) {
+            textIds.remove(id);
+            return;
+        }
+
+        long hi = uuid.getMostSignificantBits();
+        long lo = uuid.getLeastSignificantBits();
+        int mask = values.length - 1;
+        int slot = hash(hi, lo) & mask;
+        while (values[slot] != MISSING) {
+            if (keysHi[slot] == hi && keysLo[slot] == lo) {
+                deleteSlot(slot);
+                size--;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Remove all ids
+     */
+    void clear() {
+        keysHi = new long[INITIAL_CAPACITY];
+        keysLo = new long[INITIAL_CAPACITY];
+        values = newValues(INITIAL_CAPACITY);
+        size = 0;
+        textIds.clear();
+    }
+
+    /**
+     * Free a slot, moving later entries of the same probe run back so
+     * lookups never need tombstones
+     */
+    private void deleteSlot(int free) {
+        int mask = values.length - 1;
+        int slot = free;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == MISSING) break;
+
+            // An entry may only move back if its home slot is not after the free slot
+            int home = hash(keysHi[slot], keysLo[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - free) & mask)) {
+                keysHi[free] = keysHi[slot];
+                keysLo[free] = keysLo[slot];
+                values[free] = values[slot];
+                free = slot;
+            }
+        }
+        values[free] = MISSING;
+    }
+
+    private void resize(int capacity) {
+        long[] oldHi = keysHi;
+        long[] oldLo = keysLo;
+        int[] oldValues = values;
+
+        keysHi = new long[capacity];
+        keysLo = new long[capacity];
+        values = newValues(capacity);
+        size = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != MISSING) {
+                put(oldHi[i], oldLo[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int[] newValues(int capacity) {
+        int[] values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        return values;
+    }
+
+    private static int hash(long hi, long lo) {
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
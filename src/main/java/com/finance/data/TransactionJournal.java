@@ -0,0 +1,278 @@
+package com.finance.data;
+
+import com.finance.model.Transaction;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only log of transaction mutations (write-ahead journal).
+ * Each add/update/delete is written as one small record instead of
+ * re-serializing the whole transaction list. The journal is replayed
+ * on top of the last snapshot when data is loaded and truncated
+ * whenever a new snapshot is written.
+ *
+ * A record left half-written by a crash is cut off when the journal is
+ * replayed, so later records are appended right after the last good one.
+ * A record that cannot be read is skipped and the journal reported as
+ * damaged; when the rest of the file cannot be read either it is kept
+ * in a copy before being cut off.
+ */
+class TransactionJournal {
+    // Record types
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    /**
+     * Receives journal records during replay
+     */
+    interface Replay {
+        /**
+         * Insert the transaction, or replace the one with the same id
+         */
+        void put(Transaction transaction);
+
+        /**
+         * Remove the transaction with the given id if present
+         */
+        void delete(String transactionId);
+    }
+
+    private final File file;
+    private DataOutputStream out;
+    private int recordCount;
+    private boolean damaged;
+
+    /**
+     * Constructor
+     *
+     * @param filePath location of the journal file
+     */
+    TransactionJournal(String filePath) {
+        this.file = new File(filePath);
+    }
+
+    /**
+     * Append an insert-or-replace record for a transaction
+     *
+     * @param transaction the added or updated transaction
+     * @throws IOException if the record could not be written
+     */
+    void appendPut(Transaction transaction) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(transaction);
+        }
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(bytes.size() + 5);
+        DataOutputStream dos = new DataOutputStream(record);
+        dos.writeByte(PUT);
+        dos.writeInt(bytes.size());
+        bytes.writeTo(dos);
+        write(record);
+    }
+
+    /**
+     * Append a delete record for a transaction id
+     *
+     * @param transactionId id of the deleted transaction
+     * @throws IOException if the record could not be written
+     */
+    void appendDelete(String transactionId) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(record);
+        dos.writeByte(DELETE);
+        dos.writeUTF(transactionId);
+        write(record);
+    }
+
+    /**
+     * Write a complete record with a single call so a crash can only
+     * leave a truncated record at the very end of the file
+     */
+    private void write(ByteArrayOutputStream record) throws IOException {
+        if (out == null) {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        }
+        record.writeTo(out);
+        out.flush();
+        recordCount++;
+    }
+
+    /**
+     * Replay all records in the journal. Records are idempotent
+     * (insert-or-replace and delete by id) so replaying on top of a snapshot
+     * that already contains some of them is harmless.
+     *
+     * @param replay receiver of the records
+     * @return number of records replayed
+     */
+    int replay(Replay replay) {
+        close();
+        recordCount = 0;
+        damaged = false;
+        if (!file.exists()) {
+            return 0;
+        }
+
+        long validLength = 0; // end of the last complete record
+        boolean unreadable = false;
+        try (CountingInputStream counter = new CountingInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+             DataInputStream in = new DataInputStream(counter)) {
+            while (true) {
+                int type = in.read();
+                if (type == -1) {
+                    break;
+                }
+
+                if (type == PUT) {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    Transaction transaction = null;
+                    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                        transaction = (Transaction) ois.readObject();
+                    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                        // The record's length is known, so the next one can still be read
+                        System.err.println("Skipping unreadable transaction journal record: " + e.getMessage());
+                        damaged = true;
+                    }
+                    if (transaction != null) {
+                        replay.put(transaction);
+                    }
+                } else if (type == DELETE) {
+                    replay.delete(in.readUTF());
+                } else {
+                    throw new IOException("Unknown journal record type " + type);
+                }
+                validLength = counter.getCount();
+                recordCount++;
+            }
+        } catch (EOFException e) {
+            // Last record was only partially written, everything before it is valid
+            System.err.println("Ignoring truncated record at end of transaction journal");
+        } catch (IOException e) {
+            System.err.println("Error replaying transaction journal: " + e.getMessage());
+            damaged = true;
+            unreadable = true;
+        }
+
+        if (validLength < file.length()) {
+            cutOff(validLength, unreadable);
+        }
+        return recordCount;
+    }
+
+    /**
+     * Whether a record could not be read by the last replay. Transactions
+     * may be missing, so the journal should be kept rather than reset.
+     */
+    boolean isDamaged() {
+        return damaged;
+    }
+
+    /**
+     * Cut the file back to the end of the last complete record so new
+     * records are not appended after a broken one
+     *
+     * @param validLength the length to keep
+     * @param keepCopy whether to copy the whole file aside first
+     */
+    private void cutOff(long validLength, boolean keepCopy) {
+        try {
+            if (keepCopy) {
+                File copy = new File(file.getPath() + ".damaged");
+                Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                System.err.println("Unreadable transaction journal kept in " + copy.getAbsolutePath());
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        } catch (IOException e) {
+            System.err.println("Error truncating transaction journal: " + e.getMessage());
+            damaged = true;
+        }
+    }
+
+    /**
+     * Get the number of records written since the last snapshot
+     *
+     * @return the record count
+     */
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Get the size of the journal file
+     *
+     * @return the size in bytes, 0 if there is no journal
+     */
+    long length() {
+        return file.length();
+    }
+
+    /**
+     * Discard all records, called after a snapshot has been written
+     */
+    void reset() {
+        close();
+        recordCount = 0;
+        if (file.exists() && !file.delete()) {
+            System.err.println("Could not truncate transaction journal: " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Counts the bytes read through it, to find where records end
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Close the underlying file
+     */
+    void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Error closing transaction journal: " + e.getMessage());
+            }
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.finance.data;
+
+import com.finance.model.Category;
+import com.finance.model.Transaction;
+
+import java.util.*;
+
+import static com.finance.data.TransactionFileFormat.*;
+
+/**
+ * Transactions held in memory as parallel primitive arrays, one per field,
+ * in the same encoding as {@link TransactionFileFormat}: UUID ids as two
+ * longs, dates as epoch days, amounts as cents, categories as indexes into
+ * a small dictionary, and descriptions, notes and text ids as indexes into
+ * a deduplicating string pool. A row takes about 50 bytes plus its share
+ * of the pool, instead of a Transaction with its LocalDate and id String.
+ *
+ * Transaction objects are only created when a row is asked for; scans such
+ * as {@link #forEachAmount} and {@link #inRange} read the arrays directly.
+ * Rows keep the order they were added in. Replacing a row updates it in
+ * place; removed rows are skipped and dropped once they are the majority.
+ * Strings of replaced rows stay in the pool until the ledger is dropped.
+ *
+ * Not thread-safe, callers synchronize. A {@link #copy()} may be read from
+ * another thread.
+ */
+final class TransactionLedger {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int rows;          // rows in use, removed ones included
+    private long[] idHi;
+    private long[] idLo;       // string pool index for text ids
+    private int[] epochDay;
+    private long[] cents;
+    private short[] category;  // index into categories, or NONE
+    private int[] description; // string pool index, or NONE
+    private int[] notes;
+    private byte[] type;
+    private byte[] kind;
+    private byte[] detail;
+    private byte[] flags;
+    private final BitSet removed;
+    private int removedCount;
+
+    private final List<Category> categories;
+    private final Map<Category, Integer> categoryIndex;
+    private final List<String> strings;
+    private final Map<String, Integer> stringIndex;
+    private TransactionIdIndex ids; // id to row, null in copies
+
+    /**
+     * Create an empty ledger
+     */
+    TransactionLedger() {
+        allocate(INITIAL_CAPACITY);
+        removed = new BitSet();
+        categories = new ArrayList<>();
+        categoryIndex = new IdentityHashMap<>();
+        strings = new ArrayList<>();
+        stringIndex = new HashMap<>();
+        ids = new TransactionIdIndex();
+    }
+
+    private TransactionLedger(TransactionLedger source) {
+        rows = source.rows;
+        idHi = Arrays.copyOf(source.idHi, rows);
+        idLo = Arrays.copyOf(source.idLo, rows);
+        epochDay = Arrays.copyOf(source.epochDay, rows);
+        cents = Arrays.copyOf(source.cents, rows);
+        category = Arrays.copyOf(source.category, rows);
+        description = Arrays.copyOf(source.description, rows);
+        notes = Arrays.copyOf(source.notes, rows);
+        type = Arrays.copyOf(source.type, rows);
+        kind = Arrays.copyOf(source.kind, rows);
+        detail = Arrays.copyOf(source.detail, rows);
+        flags = Arrays.copyOf(source.flags, rows);
+        removed = (BitSet) source.removed.clone();
+        removedCount = source.removedCount;
+        categories = new ArrayList<>(source.categories);
+        categoryIndex = Collections.emptyMap();
+        strings = new ArrayList<>(source.strings);
+        stringIndex = Collections.emptyMap();
+    }
+
+    /**
+     * Copy the rows for reading from another thread. The copy cannot be
+     * changed or looked up by id.
+     */
+    TransactionLedger copy() {
+        return new TransactionLedger(this);
+    }
+
+    int size() {
+        return rows - removedCount;
+    }
+
+    boolean contains(String id) {
+        return row(id) != -1;
+    }
+
+    /**
+     * Find a transaction by id
+     *
+     * @return a new Transaction for the row, or null if there is none with this id
+     */
+    Transaction get(String id) {
+        int row = row(id);
+        return row == -1 ? null : get(row);
+    }
+
+    /**
+     * Add a transaction known not to be in this ledger yet
+     */
+    void append(Transaction transaction) {
+        if (rows == idHi.length) {
+            allocate(rows + (rows >> 1));
+        }
+        set(rows, transaction);
+        ids.put(transaction.getId(), rows);
+        rows++;
+    }
+
+    /**
+     * Replace the transaction with the same id, keeping its position
+     *
+     * @return false if there is no transaction with this id
+     */
+    boolean replace(Transaction transaction) {
+        int row = row(transaction.getId());
+        if (row == -1) return false;
+        set(row, transaction);
+        return true;
+    }
+
+    /**
+     * Remove the transaction with the given id
+     *
+     * @return false if there is no transaction with this id
+     */
+    boolean remove(String id) {
+        int row = row(id);
+        if (row == -1) return false;
+
+        ids.remove(id);
+        removed.set(row);
+        removedCount++;
+        if (removedCount > INITIAL_CAPACITY && removedCount * 2 > rows) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Add the id of every transaction to an index
+     *
+     * @param index the index to add to
+     * @param value the value to store for each id
+     */
+    void indexIds(TransactionIdIndex index, int value) {
+        for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+            if ((flags[row] & FLAG_TEXT_ID) != 0) {
+                index.put(id(row), value);
+            } else {
+                index.put(idHi[row], idLo[row], value);
+            }
+        }
+    }
+
+    /**
+     * Visit the amount of every transaction straight from the columns
+     */
+    void forEachAmount(TransactionSegment.AmountVisitor visitor) {
+        for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+            visitor.visit(epochDay[row], category(row), decodeType(type[row]), cents[row]);
+        }
+    }
+
+    /**
+     * Materialize every transaction, in the order they were added
+     */
+    List<Transaction> toList() {
+        List<Transaction> result = new ArrayList<>(size());
+        for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+            result.add(get(row));
+        }
+        return result;
+    }
+
+    /**
+     * Add the transactions dated within a range to a list. Only matching
+     * rows are materialized.
+     *
+     * @param fromEpochDay first day of the range, inclusive
+     * @param toEpochDay last day of the range, inclusive
+     * @param result the list to add to
+     */
+    void inRange(long fromEpochDay, long toEpochDay, List<Transaction> result) {
+        for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+            int day = epochDay[row];
+            if (day != NO_DATE && day >= fromEpochDay && day <= toEpochDay) {
+                result.add(get(row));
+            }
+        }
+    }
+
+    /**
+     * Encode a transaction into a row
+     */
+    private void set(int row, Transaction transaction) {
+        UUID uuid = parseUuid(transaction.getId());
+        byte rowFlags = encodeFlags(transaction);
+        if (uuid != null) {
+            idHi[row] = uuid.getMostSignificantBits();
+            idLo[row] = uuid.getLeastSignificantBits();
+        } else {
+            idHi[row] = 0;
+            idLo[row] = string(transaction.getId());
+            rowFlags |= FLAG_TEXT_ID;
+        }
+
+        epochDay[row] = transaction.getDate() == null ? NO_DATE : (int) transaction.getDate().toEpochDay();
+        cents[row] = transaction.getAmountCents();
+        category[row] = categoryIndex(transaction.getCategory());
+        description[row] = string(transaction.getDescription());
+        notes[row] = string(transaction.getNotes());
+        type[row] = encodeType(transaction.getType());
+        kind[row] = encodeKind(transaction);
+        detail[row] = encodeDetail(transaction);
+        flags[row] = rowFlags;
+    }
+
+    /**
+     * Materialize one row as a Transaction object
+     */
+    private Transaction get(int row) {
+        return decodeTransaction(id(row), cents[row], epochDay[row], category(row),
+            string(description[row]), string(notes[row]), kind[row], detail[row], flags[row]);
+    }
+
+    private String id(int row) {
+        if ((flags[row] & FLAG_TEXT_ID) != 0) {
+            return string((int) idLo[row]);
+        }
+        return new UUID(idHi[row], idLo[row]).toString();
+    }
+
+    private Category category(int row) {
+        return category[row] == NONE ? null : categories.get(category[row]);
+    }
+
+    private int row(String id) {
+        if (id == null || ids == null) return -1;
+        int row = ids.get(id);
+        return row == TransactionIdIndex.MISSING ? -1 : row;
+    }
+
+    private short categoryIndex(Category value) {
+        if (value == null) return NONE;
+        Integer index = categoryIndex.get(value);
+        if (index == null) {
+            if (categories.size() > Short.MAX_VALUE) {
+                throw new IllegalStateException("Too many categories in one ledger");
+            }
+            index = categories.size();
+            categoryIndex.put(value, index);
+            categories.add(value);
+        }
+        return (short) (int) index;
+    }
+
+    private int string(String value) {
+        if (value == null) return NONE;
+        Integer index = stringIndex.get(value);
+        if (index == null) {
+            index = strings.size();
+            stringIndex.put(value, index);
+            strings.add(value);
+        }
+        return index;
+    }
+
+    private String string(int index) {
+        return index == NONE ? null : strings.get(index);
+    }
+
+    /**
+     * Drop removed rows, moving the live ones down in order
+     */
+    private void compact() {
+        int live = 0;
+        ids.clear();
+        for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+            idHi[live] = idHi[row];
+            idLo[live] = idLo[row];
+            epochDay[live] = epochDay[row];
+            cents[live] = cents[row];
+            category[live] = category[row];
+            description[live] = description[row];
+            notes[live] = notes[row];
+            type[live] = type[row];
+            kind[live] = kind[row];
+            detail[live] = detail[row];
+            flags[live] = flags[row];
+            live++;
+        }
+        rows = live;
+        removed.clear();
+        removedCount = 0;
+        for (int row = 0; row < rows; row++) {
+            if ((flags[row] & FLAG_TEXT_ID) != 0) {
+                ids.put(id(row), row);
+            } else {
+                ids.put(idHi[row], idLo[row], row);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        idHi = idHi == null ? new long[capacity] : Arrays.copyOf(idHi, capacity);
+        idLo = idLo == null ? new long[capacity] : Arrays.copyOf(idLo, capacity);
+        epochDay = epochDay == null ? new int[capacity] : Arrays.copyOf(epochDay, capacity);
+        cents = cents == null ? new long[capacity] : Arrays.copyOf(cents, capacity);
+        category = category == null ? new short[capacity] : Arrays.copyOf(category, capacity);
+        description = description == null ? new int[capacity] : Arrays.copyOf(description, capacity);
+        notes = notes == null ? new int[capacity] : Arrays.copyOf(notes, capacity);
+        type = type == null ? new byte[capacity] : Arrays.copyOf(type, capacity);
+        kind = kind == null ? new byte[capacity] : Arrays.copyOf(kind, capacity);
+        detail = detail == null ? new byte[capacity] : Arrays.copyOf(detail, capacity);
+        flags = flags == null ? new byte[capacity] : Arrays.copyOf(flags, capacity);
+    }
+}
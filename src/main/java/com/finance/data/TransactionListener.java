@@ -0,0 +1,23 @@
+package com.finance.data;
+
+import java.time.YearMonth;
+import java.util.Set;
+
+/**
+ * Interface for components that want to know which months' transactions
+ * were changed, such as caches of results computed from them
+ */
+public interface TransactionListener {
+    /**
+     * Called after transactions were added, updated or deleted, once the
+     * change is visible to readers. Called on the thread that made the
+     * change; several changes may be reported together.
+     *
+     * @param version the modification version after the change, see
+     *                {@link DataManager#getModificationVersion()}
+     * @param months the months whose transactions changed, or null if
+     *               transactions of any month may have changed (load, import).
+     *               Changes to undated transactions report no month.
+     */
+    void transactionsChanged(long version, Set<YearMonth> months);
+}
@@ -0,0 +1,378 @@
+package com.finance.data;
+
+import com.finance.model.Category;
+import com.finance.model.Transaction;
+import com.finance.model.TransactionType;
+
+import java.lang.ref.SoftReference;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * The transactions of one partition, layered over a memory-mapped segment
+ * file. Rows of the segment are only turned into Transaction objects when
+ * they are requested; materialized rows are kept in a soft cache the
+ * garbage collector may drop under memory pressure. Changes made since the
+ * segment was mapped are held in small overlays: replaced rows, removed
+ * rows and a {@link TransactionLedger} of added transactions. Ids of the
+ * mapped rows are looked up through a row index built the first time it is
+ * needed. Date ranges are found by binary search over the mapped date
+ * column.
+ *
+ * Not thread-safe, callers synchronize. A {@link Snapshot} may be read
+ * from another thread.
+ */
+final class TransactionSegment {
+    private final MappedTransactionFile base;
+    private final BitSet removed = new BitSet();
+    private final Map<Integer, Transaction> replaced = new HashMap<>();
+    private final TransactionLedger added = new TransactionLedger();
+    private SoftReference<Transaction[]> cache = new SoftReference<>(null);
+    private TransactionIdIndex rowIndex; // id to row of the mapped file, built on first use
+    private int[] dateOrder;             // rows of an unsorted mapped file in date order
+
+    /**
+     * Create an empty segment
+     */
+    TransactionSegment() {
+        this(null);
+    }
+
+    /**
+     * Create a segment serving the rows of a mapped file
+     *
+     * @param base the mapped file, or null for none
+     */
+    TransactionSegment(MappedTransactionFile base) {
+        this.base = base;
+    }
+
+    int size() {
+        int baseRows = base == null ? 0 : base.size() - removed.cardinality();
+        return baseRows + added.size();
+    }
+
+    /**
+     * Find a transaction by id
+     *
+     * @return the transaction, or null if there is none with this id
+     */
+    Transaction get(String id) {
+        Transaction transaction = added.get(id);
+        if (transaction != null) return transaction;
+
+        int row = baseRow(id);
+        return row == -1 ? null : row(row);
+    }
+
+    /**
+     * Add a transaction known not to be in this segment yet
+     */
+    void append(Transaction transaction) {
+        added.append(transaction);
+    }
+
+    /**
+     * Replace the transaction with the same id
+     *
+     * @return false if there is no transaction with this id
+     */
+    boolean replace(Transaction transaction) {
+        if (added.replace(transaction)) return true;
+
+        int row = baseRow(transaction.getId());
+        if (row == -1) return false;
+        replaced.put(row, transaction);
+        return true;
+    }
+
+    /**
+     * Remove the transaction with the given id
+     *
+     * @return false if there is no transaction with this id
+     */
+    boolean remove(String id) {
+        if (added.remove(id)) return true;
+
+        int row = baseRow(id);
+        if (row == -1) return false;
+        removed.set(row);
+        replaced.remove(row);
+        return true;
+    }
+
+    /**
+     * Add the id of every transaction to an index
+     *
+     * @param index the index to add to
+     * @param value the value to store for each id
+     */
+    void indexIds(TransactionIdIndex index, int value) {
+        if (base != null) {
+            for (int row = removed.nextClearBit(0); row < base.size(); row = removed.nextClearBit(row + 1)) {
+                base.indexId(row, index, value);
+            }
+        }
+        added.indexIds(index, value);
+    }
+
+    /**
+     * Receives the date, category, type and amount of each transaction
+     */
+    interface AmountVisitor {
+        /**
+         * @param epochDay the date, or TransactionFileFormat.NO_DATE
+         * @param cents the amount in cents
+         */
+        void visit(int epochDay, Category category, TransactionType type, long cents);
+    }
+
+    /**
+     * Visit the amount of every transaction. Mapped rows are read from
+     * their columns without being materialized.
+     */
+    void forEachAmount(AmountVisitor visitor) {
+        if (base != null) {
+            for (int row = removed.nextClearBit(0); row < base.size(); row = removed.nextClearBit(row + 1)) {
+                if (!replaced.containsKey(row)) {
+                    visitor.visit(base.epochDay(row), base.category(row),
+                        TransactionFileFormat.decodeType(base.type(row)), base.cents(row));
+                }
+            }
+            for (Transaction replacement : replaced.values()) {
+                visit(replacement, visitor);
+            }
+        }
+        added.forEachAmount(visitor);
+    }
+
+    /**
+     * Add the transactions dated within a range to an aggregate cube
+     * without materializing them. Where the mapped file is sorted by date
+     * and has no changes in the range, the matching rows are totalled
+     * column by column; other rows are added one at a time.
+     *
+     * @param fromEpochDay first day of the range, inclusive
+     * @param toEpochDay last day of the range, inclusive
+     * @param month the month of this segment's transactions
+     * @param cube the cube to add to
+     */
+    void aggregateRange(long fromEpochDay, long toEpochDay, YearMonth month, AggregateCube cube) {
+        AmountVisitor inRange = (epochDay, category, type, cents) -> {
+            if (epochDay != TransactionFileFormat.NO_DATE && epochDay >= fromEpochDay && epochDay <= toEpochDay) {
+                cube.add(month, category, type, cents);
+            }
+        };
+
+        if (base != null) {
+            long from = Math.max(fromEpochDay, TransactionFileFormat.NO_DATE + 1L);
+            int[] order = dateOrder();
+            int start = firstDateAfter(order, from - 1);
+            int end = firstDateAfter(order, toEpochDay);
+            if (order == null && isUnchanged(start, end)) {
+                base.aggregate(start, end, month, cube);
+            } else {
+                for (int i = start; i < end; i++) {
+                    int row = order == null ? i : order[i];
+                    if (!removed.get(row) && !replaced.containsKey(row)) {
+                        inRange.visit(base.epochDay(row), base.category(row),
+                            TransactionFileFormat.decodeType(base.type(row)), base.cents(row));
+                    }
+                }
+            }
+
+            for (Transaction replacement : replaced.values()) {
+                visit(replacement, inRange);
+            }
+        }
+        added.forEachAmount(inRange);
+    }
+
+    /**
+     * Materialize every transaction, in stored order
+     */
+    List<Transaction> toList() {
+        List<Transaction> result = new ArrayList<>(size());
+        if (base != null) {
+            for (int row = removed.nextClearBit(0); row < base.size(); row = removed.nextClearBit(row + 1)) {
+                result.add(row(row));
+            }
+        }
+        result.addAll(added.toList());
+        return result;
+    }
+
+    /**
+     * Get the transactions dated within a range. The range is located by
+     * binary search over the mapped date column, so only matching rows are
+     * read and materialized.
+     *
+     * @param fromEpochDay first day of the range, inclusive
+     * @param toEpochDay last day of the range, inclusive
+     * @return the matching transactions; mapped rows come in date order
+     */
+    List<Transaction> inRange(long fromEpochDay, long toEpochDay) {
+        List<Transaction> result = new ArrayList<>();
+        if (base != null) {
+            // Undated rows are stored as the smallest date, keep them out
+            long from = Math.max(fromEpochDay, TransactionFileFormat.NO_DATE + 1L);
+            int[] order = dateOrder();
+            int end = firstDateAfter(order, toEpochDay);
+            for (int i = firstDateAfter(order, from - 1); i < end; i++) {
+                int row = order == null ? i : order[i];
+                if (!removed.get(row) && !replaced.containsKey(row)) {
+                    result.add(row(row));
+                }
+            }
+
+            // A replaced row may have moved to another day
+            for (Transaction replacement : replaced.values()) {
+                if (isInRange(replacement, fromEpochDay, toEpochDay)) {
+                    result.add(replacement);
+                }
+            }
+        }
+        added.inRange(fromEpochDay, toEpochDay, result);
+        return result;
+    }
+
+    /**
+     * Capture the current contents so they can be written by another thread.
+     * Only the overlays are copied; the mapped rows are shared.
+     */
+    Snapshot snapshot() {
+        return new Snapshot(base, (BitSet) removed.clone(), new HashMap<>(replaced), added.copy());
+    }
+
+    /**
+     * Immutable copy of the segment's contents
+     */
+    static final class Snapshot {
+        private final MappedTransactionFile base;
+        private final BitSet removed;
+        private final Map<Integer, Transaction> replaced;
+        private final TransactionLedger added;
+
+        private Snapshot(MappedTransactionFile base, BitSet removed,
+                         Map<Integer, Transaction> replaced, TransactionLedger added) {
+            this.base = base;
+            this.removed = removed;
+            this.replaced = replaced;
+            this.added = added;
+        }
+
+        /**
+         * Materialize every transaction, in stored order
+         */
+        List<Transaction> toList() {
+            int baseRows = base == null ? 0 : base.size();
+            List<Transaction> result = new ArrayList<>(baseRows - removed.cardinality() + added.size());
+            for (int row = removed.nextClearBit(0); row < baseRows; row = removed.nextClearBit(row + 1)) {
+                Transaction replacement = replaced.get(row);
+                result.add(replacement != null ? replacement : base.get(row));
+            }
+            result.addAll(added.toList());
+            return result;
+        }
+    }
+
+    /**
+     * Get the rows of the mapped file in date order
+     *
+     * @return the rows, or null if the file already stores them in date order
+     */
+    private int[] dateOrder() {
+        if (base.isSortedByDate()) return null;
+
+        if (dateOrder == null) {
+            // Sort (day, row) pairs packed into longs
+            long[] keys = new long[base.size()];
+            for (int row = 0; row < keys.length; row++) {
+                keys[row] = ((long) base.epochDay(row) << 32) | row;
+            }
+            Arrays.sort(keys);
+
+            dateOrder = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                dateOrder[i] = (int) keys[i];
+            }
+        }
+        return dateOrder;
+    }
+
+    /**
+     * Check that no row of the mapped file in a range was removed or replaced
+     */
+    private boolean isUnchanged(int fromRow, int toRow) {
+        int firstRemoved = removed.nextSetBit(fromRow);
+        if (firstRemoved != -1 && firstRemoved < toRow) return false;
+        for (int row : replaced.keySet()) {
+            if (row >= fromRow && row < toRow) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Binary search for the first position in date order dated after a day
+     */
+    private int firstDateAfter(int[] order, long epochDay) {
+        int low = 0;
+        int high = base.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int day = base.epochDay(order == null ? middle : order[middle]);
+            if (day <= epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find the live row of the mapped snapshot holding an id
+     */
+    private int baseRow(String id) {
+        if (base == null || id == null) return -1;
+        if (rowIndex == null) {
+            rowIndex = new TransactionIdIndex();
+            for (int row = 0; row < base.size(); row++) {
+                base.indexId(row, rowIndex, row);
+            }
+        }
+        int row = rowIndex.get(id);
+        return row == TransactionIdIndex.MISSING || removed.get(row) ? -1 : row;
+    }
+
+    /**
+     * Get the current transaction for a live row of the mapped snapshot
+     */
+    private Transaction row(int row) {
+        Transaction replacement = replaced.get(row);
+        if (replacement != null) return replacement;
+
+        Transaction[] rows = cache.get();
+        if (rows == null) {
+            rows = new Transaction[base.size()];
+            cache = new SoftReference<>(rows);
+        }
+        if (rows[row] == null) {
+            rows[row] = base.get(row);
+        }
+        return rows[row];
+    }
+
+    private static void visit(Transaction transaction, AmountVisitor visitor) {
+        int epochDay = transaction.getDate() == null
+            ? TransactionFileFormat.NO_DATE : (int) transaction.getDate().toEpochDay();
+        visitor.visit(epochDay, transaction.getCategory(), transaction.getType(),
+            transaction.getAmountCents());
+    }
+
+    private static boolean isInRange(Transaction transaction, long fromEpochDay, long toEpochDay) {
+        if (transaction.getDate() == null) return false;
+        long day = transaction.getDate().toEpochDay();
+        return day >= fromEpochDay && day <= toEpochDay;
+    }
+}
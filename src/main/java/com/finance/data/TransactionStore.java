@@ -0,0 +1,526 @@
+package com.finance.data;
+
+import com.finance.model.Transaction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * All transactions, partitioned by month. Each month is stored in its own
+ * segment file in {@link TransactionFileFormat}, named
+ * {@code <yyyy-MM>.<generation>.dat}; transactions without a date go to
+ * {@code undated.<generation>.dat}.
+ *
+ * A partition is only mapped when a query touches it, and at most
+ * MAX_RESIDENT_PARTITIONS are kept resident, least recently used first
+ * out. Partitions with changes that have not been written yet stay
+ * resident until they are. Writing a segment creates the next generation
+ * of its file instead of replacing the current one, which some platforms
+ * refuse to do while the file is mapped.
+ *
+ * An index from transaction id to partition, built the first time an id
+ * is looked up, makes lookups, updates and deletes constant-time.
+ *
+ * A segment file that cannot be mapped reads as empty, and mapping is
+ * retried on the next access. Until it succeeds the partition refuses
+ * changes, so it is never rewritten and its file never deleted.
+ *
+ * Not thread-safe, callers synchronize. A {@link SegmentSnapshot} may be
+ * written from another thread.
+ */
+final class TransactionStore {
+    // Number of clean partitions kept mapped and materialized
+    private static final int MAX_RESIDENT_PARTITIONS = 24;
+
+    private static final String UNDATED = "undated";
+    private static final String EXTENSION = ".dat";
+
+    private final File directory;
+    private final TreeMap<YearMonth, Partition> partitions = new TreeMap<>();
+    private Partition undated;
+    private final List<Partition> numbered = new ArrayList<>();
+    private TransactionIdIndex index; // id to partition number, null until first used
+
+    // Resident partitions in access order, eldest first
+    private final LinkedHashMap<Partition, Boolean> resident = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * One month of transactions
+     */
+    private static final class Partition {
+        final int number;      // position in numbered
+        final YearMonth month; // null for undated transactions
+        File file;             // newest segment file, null if never written
+        int generation;
+        TransactionSegment segment; // null while not resident
+        boolean dirty;         // changed since the segment file was written
+        int version;           // incremented on every change
+        IOException failure;   // why the segment file could not be mapped, null if it could
+
+        Partition(int number, YearMonth month) {
+            this.number = number;
+            this.month = month;
+        }
+    }
+
+    private TransactionStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Open the partitions stored in a directory. Only the file names are
+     * read; segments are mapped when they are first used.
+     *
+     * @param directory the directory holding the segment files
+     * @return the store
+     */
+    static TransactionStore open(File directory) {
+        TransactionStore store = new TransactionStore(directory);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        File[] files = directory.listFiles();
+        if (files == null) return store;
+
+        Map<File, Partition> segmentFiles = new HashMap<>();
+        Map<File, Integer> generations = new HashMap<>();
+        for (File file : files) {
+            String name = file.getName();
+            int dot = name.indexOf('.');
+            if (dot == -1 || !name.endsWith(EXTENSION)) continue;
+
+            int generation;
+            YearMonth month;
+            try {
+                generation = Integer.parseInt(name.substring(dot + 1, name.length() - EXTENSION.length()));
+                String key = name.substring(0, dot);
+                month = key.equals(UNDATED) ? null : YearMonth.parse(key);
+            } catch (NumberFormatException | DateTimeParseException e) {
+                continue;
+            }
+
+            Partition partition = store.partition(month);
+            segmentFiles.put(file, partition);
+            generations.put(file, generation);
+            if (partition.file == null || generation > partition.generation) {
+                partition.file = file;
+                partition.generation = generation;
+            }
+        }
+
+        // Older generations are left over when a delete failed earlier
+        for (Map.Entry<File, Partition> entry : segmentFiles.entrySet()) {
+            if (generations.get(entry.getKey()) < entry.getValue().generation) {
+                entry.getKey().delete();
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Find a transaction by id
+     *
+     * @return the transaction, or null if there is none with this id
+     */
+    Transaction get(String id) {
+        Partition partition = partitionHolding(id);
+        return partition == null ? null : segment(partition).get(id);
+    }
+
+    /**
+     * Insert a transaction, or replace the one with the same id
+     */
+    void put(Transaction transaction) {
+        if (!replace(transaction)) {
+            append(transaction);
+        }
+    }
+
+    /**
+     * Replace the transaction with the same id, moving it to another
+     * partition if its date changed month
+     *
+     * @return false if there is no transaction with this id
+     */
+    boolean replace(Transaction transaction) {
+        Partition holder = partitionHolding(transaction.getId());
+        if (holder == null) return false;
+
+        Partition target = partitionFor(transaction);
+        if (holder == target) {
+            writableSegment(target).replace(transaction);
+            changed(target);
+        } else {
+            // Check both partitions can change before changing either
+            writableSegment(target);
+            writableSegment(holder).remove(transaction.getId());
+            changed(holder);
+            append(transaction);
+        }
+        return true;
+    }
+
+    /**
+     * Remove the transaction with the given id
+     *
+     * @return false if there is no transaction with this id
+     */
+    boolean remove(String id) {
+        Partition holder = partitionHolding(id);
+        if (holder == null) return false;
+
+        writableSegment(holder).remove(id);
+        changed(holder);
+        if (index != null) {
+            index.remove(id);
+        }
+        return true;
+    }
+
+    /**
+     * Replace all transactions. Every existing partition is emptied and
+     * marked changed so its segment file is rewritten.
+     */
+    void replaceAll(List<Transaction> transactions) {
+        for (Partition partition : allPartitions()) {
+            resident.remove(partition);
+            partition.segment = new TransactionSegment();
+            partition.failure = null;
+            resident.put(partition, Boolean.TRUE);
+            changed(partition);
+        }
+
+        // Every partition is empty, so the index is complete from here on
+        index = new TransactionIdIndex();
+        for (Transaction transaction : transactions) {
+            append(transaction);
+        }
+    }
+
+    /**
+     * Materialize every transaction, by month
+     */
+    List<Transaction> toList() {
+        List<Transaction> result = new ArrayList<>();
+        for (Partition partition : allPartitions()) {
+            result.addAll(segment(partition).toList());
+        }
+        return result;
+    }
+
+    /**
+     * Get the transactions dated within a range. Only the partitions of
+     * the months in the range are loaded.
+     *
+     * @param startDate first day of the range, inclusive, or null for no limit
+     * @param endDate last day of the range, inclusive, or null for no limit
+     * @return the matching transactions, by month; none if the range ends
+     *         before it starts
+     */
+    List<Transaction> inRange(LocalDate startDate, LocalDate endDate) {
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            return new ArrayList<>();
+        }
+
+        NavigableMap<YearMonth, Partition> months = partitions;
+        if (startDate != null) {
+            months = months.tailMap(YearMonth.from(startDate), true);
+        }
+        if (endDate != null) {
+            months = months.headMap(YearMonth.from(endDate), true);
+        }
+
+        long from = startDate == null ? Long.MIN_VALUE : startDate.toEpochDay();
+        long to = endDate == null ? Long.MAX_VALUE : endDate.toEpochDay();
+        List<Transaction> result = new ArrayList<>();
+        for (Partition partition : new ArrayList<>(months.values())) {
+            result.addAll(segment(partition).inRange(from, to));
+        }
+        return result;
+    }
+
+    /**
+     * Get the latest dated transactions, newest first. Partitions are read
+     * from the newest month back, only until enough transactions are found.
+     *
+     * @param count the number of transactions wanted
+     * @return at most count transactions
+     */
+    List<Transaction> mostRecent(int count) {
+        List<Transaction> result = new ArrayList<>();
+        for (Partition partition : new ArrayList<>(partitions.descendingMap().values())) {
+            if (result.size() >= count) break;
+            result.addAll(segment(partition).toList());
+        }
+
+        // Every earlier month is older than the transactions found
+        result.sort(Comparator.comparing(Transaction::getDate).reversed());
+        return result.size() > count ? new ArrayList<>(result.subList(0, count)) : result;
+    }
+
+    /**
+     * Add the transactions dated within a range to an aggregate cube
+     * without materializing them. Only the partitions of the months in the
+     * range are loaded.
+     *
+     * @param startDate first day of the range, inclusive
+     * @param endDate last day of the range, inclusive; nothing is added if
+     *                it is before startDate
+     * @param cube the cube to add to
+     */
+    void aggregateRange(LocalDate startDate, LocalDate endDate, AggregateCube cube) {
+        if (startDate.isAfter(endDate)) return;
+
+        NavigableMap<YearMonth, Partition> months =
+            partitions.subMap(YearMonth.from(startDate), true, YearMonth.from(endDate), true);
+        for (Partition partition : new ArrayList<>(months.values())) {
+            segment(partition).aggregateRange(startDate.toEpochDay(), endDate.toEpochDay(),
+                partition.month, cube);
+        }
+    }
+
+    /**
+     * Visit the amount of every transaction, reading mapped segments
+     * column by column
+     */
+    void forEachAmount(TransactionSegment.AmountVisitor visitor) {
+        for (Partition partition : allPartitions()) {
+            segment(partition).forEachAmount(visitor);
+        }
+    }
+
+    /**
+     * Get a value identifying the segment files currently in use. It
+     * changes whenever a segment is written.
+     */
+    long fileStamp() {
+        long stamp = 17;
+        for (Partition partition : allPartitions()) {
+            if (partition.file != null) {
+                stamp = stamp * 31 + partition.file.getName().hashCode();
+            }
+        }
+        return stamp;
+    }
+
+    /**
+     * Capture every partition changed since its segment was last written
+     */
+    List<SegmentSnapshot> dirtySegments() {
+        List<SegmentSnapshot> result = new ArrayList<>();
+        for (Partition partition : allPartitions()) {
+            if (partition.dirty) {
+                int generation = partition.generation + 1;
+                result.add(new SegmentSnapshot(partition, partition.version, generation,
+                    new File(directory, fileName(partition.month, generation)), partition.file,
+                    segment(partition).snapshot()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Record that a segment snapshot has been written. The partition is
+     * clean again unless it changed while the snapshot was being written.
+     */
+    void segmentWritten(SegmentSnapshot segment) {
+        Partition partition = segment.partition;
+        partition.file = segment.file;
+        partition.generation = segment.generation;
+        if (partition.version == segment.version) {
+            partition.dirty = false;
+            evict(null);
+        }
+    }
+
+    /**
+     * Changes to one partition, captured for writing
+     */
+    static final class SegmentSnapshot {
+        private final Partition partition;
+        private final int version;
+        private final int generation;
+        private final File file;
+        private final File previousFile;
+        private final TransactionSegment.Snapshot contents;
+
+        private SegmentSnapshot(Partition partition, int version, int generation, File file,
+                                File previousFile, TransactionSegment.Snapshot contents) {
+            this.partition = partition;
+            this.version = version;
+            this.generation = generation;
+            this.file = file;
+            this.previousFile = previousFile;
+            this.contents = contents;
+        }
+
+        /**
+         * Get the file the segment is written to
+         */
+        File getFile() {
+            return file;
+        }
+
+        /**
+         * Materialize the transactions of the segment
+         */
+        List<Transaction> toList() {
+            return contents.toList();
+        }
+
+        /**
+         * Delete the file this segment supersedes. A file that is still
+         * mapped may not be deletable yet; it is retried the next time the
+         * store is opened.
+         */
+        void deletePreviousFile() {
+            if (previousFile != null) {
+                previousFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Add a transaction known not to be stored yet
+     */
+    private void append(Transaction transaction) {
+        Partition partition = partitionFor(transaction);
+        writableSegment(partition).append(transaction);
+        changed(partition);
+        if (index != null) {
+            index.put(transaction.getId(), partition.number);
+        }
+    }
+
+    /**
+     * Find the partition holding a transaction id, building the id index
+     * from all partitions the first time. The index is only kept once every
+     * partition could be read.
+     *
+     * @return the partition, or null if there is no transaction with this id
+     */
+    private Partition partitionHolding(String id) {
+        TransactionIdIndex ids = index;
+        if (ids == null) {
+            ids = new TransactionIdIndex();
+            boolean complete = true;
+            for (Partition partition : allPartitions()) {
+                segment(partition).indexIds(ids, partition.number);
+                complete &= partition.failure == null;
+            }
+            if (complete) {
+                index = ids;
+            }
+        }
+
+        int number = ids.get(id);
+        return number == TransactionIdIndex.MISSING ? null : numbered.get(number);
+    }
+
+    private void changed(Partition partition) {
+        partition.dirty = true;
+        partition.version++;
+    }
+
+    /**
+     * Get the partition a transaction belongs to, creating it if needed
+     */
+    private Partition partitionFor(Transaction transaction) {
+        return partition(transaction.getDate() == null ? null : YearMonth.from(transaction.getDate()));
+    }
+
+    private Partition partition(YearMonth month) {
+        if (month == null) {
+            if (undated == null) {
+                undated = newPartition(null);
+            }
+            return undated;
+        }
+        return partitions.computeIfAbsent(month, this::newPartition);
+    }
+
+    private Partition newPartition(YearMonth month) {
+        Partition partition = new Partition(numbered.size(), month);
+        numbered.add(partition);
+        return partition;
+    }
+
+    /**
+     * Get all partitions, by month with undated transactions last
+     */
+    private List<Partition> allPartitions() {
+        List<Partition> result = new ArrayList<>(partitions.values());
+        if (undated != null) {
+            result.add(undated);
+        }
+        return result;
+    }
+
+    /**
+     * Get the contents of a partition, mapping its segment if it is not
+     * resident. A segment that cannot be mapped is read as empty but not
+     * kept, so the next access tries again.
+     */
+    private TransactionSegment segment(Partition partition) {
+        if (partition.segment == null) {
+            if (partition.file == null) {
+                partition.segment = new TransactionSegment();
+            } else {
+                try {
+                    partition.segment = new TransactionSegment(MappedTransactionFile.map(partition.file));
+                    partition.failure = null;
+                } catch (IOException e) {
+                    if (partition.failure == null) {
+                        System.err.println("Error loading transactions for " + partition.month + ": " + e.getMessage());
+                    }
+                    partition.failure = e;
+                    return new TransactionSegment();
+                }
+            }
+        }
+        resident.put(partition, Boolean.TRUE);
+        evict(partition);
+        return partition.segment;
+    }
+
+    /**
+     * Get the contents of a partition to change them
+     *
+     * @throws UncheckedIOException if the segment file cannot be mapped;
+     *         changing the empty stand-in would overwrite the file
+     */
+    private TransactionSegment writableSegment(Partition partition) {
+        TransactionSegment segment = segment(partition);
+        if (partition.failure != null) {
+            throw new UncheckedIOException("Transactions for " + partition.month
+                + " could not be loaded; not changing them", partition.failure);
+        }
+        return segment;
+    }
+
+    /**
+     * Drop the least recently used clean partitions beyond the limit
+     *
+     * @param inUse a partition that must stay resident, or null
+     */
+    private void evict(Partition inUse) {
+        Iterator<Partition> iterator = resident.keySet().iterator();
+        while (resident.size() > MAX_RESIDENT_PARTITIONS && iterator.hasNext()) {
+            Partition partition = iterator.next();
+            if (!partition.dirty && partition != inUse) {
+                partition.segment = null;
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String fileName(YearMonth month, int generation) {
+        return (month == null ? UNDATED : month.toString()) + "." + generation + EXTENSION;
+    }
+}
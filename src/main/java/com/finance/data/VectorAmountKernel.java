@@ -0,0 +1,65 @@
+package com.finance.data;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link AmountKernel} on the Vector API. Keys are compared a vector at a
+ * time and the resulting mask selects the amount lanes that are added up;
+ * rows that do not fill a whole vector go through the scalar loop.
+ *
+ * Only loaded when jdk.incubator.vector is present, see
+ * {@link AmountKernel#get()}.
+ */
+final class VectorAmountKernel extends AmountKernel {
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    // Same number of lanes as LONGS, so keys widen into one long vector
+    private static final VectorSpecies<Integer> INTS =
+        VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.length() * Integer.SIZE));
+
+    // Until the JIT compiles them, vector operations are far slower than
+    // scalar code; short ranges are not worth it
+    private static final int MIN_ROWS = 2048;
+
+    VectorAmountKernel() {
+        if (LONGS.length() < 2) {
+            throw new UnsupportedOperationException("No SIMD support for long lanes");
+        }
+    }
+
+    @Override
+    void sumMatching(long[] cents, int[] keys, int from, int to, int key, long[] result) {
+        if (to - from < MIN_ROWS) {
+            super.sumMatching(cents, keys, from, to, key, result);
+            return;
+        }
+
+        LongVector sum = LongVector.zero(LONGS);
+        LongVector min = LongVector.broadcast(LONGS, result[2]);
+        LongVector max = LongVector.broadcast(LONGS, result[3]);
+        long count = 0;
+
+        int i = from;
+        for (int bound = from + LONGS.loopBound(to - from); i < bound; i += LONGS.length()) {
+            // Widening the keys is much cheaper than casting an int mask
+            LongVector widened = (LongVector) IntVector.fromArray(INTS, keys, i)
+                .convertShape(VectorOperators.I2L, LONGS, 0);
+            VectorMask<Long> matches = widened.eq(key);
+            LongVector amounts = LongVector.fromArray(LONGS, cents, i);
+            sum = sum.add(amounts, matches);
+            min = min.lanewise(VectorOperators.MIN, amounts, matches);
+            max = max.lanewise(VectorOperators.MAX, amounts, matches);
+            count += matches.trueCount();
+        }
+
+        result[0] += sum.reduceLanes(VectorOperators.ADD);
+        result[1] += count;
+        result[2] = min.reduceLanes(VectorOperators.MIN);
+        result[3] = max.reduceLanes(VectorOperators.MAX);
+        super.sumMatching(cents, keys, i, to, key, result);
+    }
+}
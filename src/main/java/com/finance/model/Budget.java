@@ -1,5 +1,9 @@
 package com.finance.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.YearMonth;
@@ -8,17 +12,33 @@ import java.util.UUID;
 /**
  * Budget class for managing category-based spending limits
  * Demonstrates encapsulation
+ * 
+ * Amounts are held in whole cents; the serialized form stores them as
+ * doubles, as it always has.
  */
 public class Budget implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    // Fields of the serialized form, which predates amounts in cents
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("id", String.class),
+        new ObjectStreamField("period", YearMonth.class),
+        new ObjectStreamField("category", Category.class),
+        new ObjectStreamField("amount", double.class),
+        new ObjectStreamField("notes", String.class),
+        new ObjectStreamField("spent", double.class),
+        new ObjectStreamField("plannedAmount", double.class),
+        new ObjectStreamField("startDate", String.class),
+        new ObjectStreamField("endDate", String.class)
+    };
+
     private String id; // Unique identifier for the budget
     private YearMonth period;
     private Category category;
-    private double amount;
+    private long amountCents;
     private String notes;
-    private double spent; // Track how much has been spent against this budget
-    private double plannedAmount;
+    private long spentCents; // Track how much has been spent against this budget
+    private long plannedAmountCents;
     private String  startDate;
     private String endDate;
     /**
@@ -32,9 +52,9 @@ public class Budget implements Serializable {
         this.id = UUID.randomUUID().toString();
         this.period = period;
         this.category = category;
-        this.amount = amount;
+        this.amountCents = Money.toCents(amount);
         this.notes = "";
-        this.spent = 0.0;
+        this.spentCents = 0;
     }
     
     /**
@@ -49,9 +69,9 @@ public class Budget implements Serializable {
         this.id = UUID.randomUUID().toString();
         this.period = period;
         this.category = category;
-        this.amount = amount;
+        this.amountCents = Money.toCents(amount);
         this.notes = notes;
-        this.spent = 0.0;
+        this.spentCents = 0;
     }
 
     /**
@@ -76,7 +96,7 @@ public class Budget implements Serializable {
      */
 
     public double getSpent() {
-        return spent;
+        return Money.toAmount(spentCents);
     }
 
     /**
@@ -84,7 +104,23 @@ public class Budget implements Serializable {
      * @param spent the spent amount to set
      */
     public void setSpent(double spent) {
-        this.spent = spent;
+        this.spentCents = Money.toCents(spent);
+    }
+
+    /**
+     * Get the amount spent against this budget in whole cents
+     * @return the spent amount in cents
+     */
+    public long getSpentCents() {
+        return spentCents;
+    }
+
+    /**
+     * Set the amount spent against this budget in whole cents
+     * @param spentCents the spent amount in cents
+     */
+    public void setSpentCents(long spentCents) {
+        this.spentCents = spentCents;
     }
 
     /**
@@ -92,7 +128,7 @@ public class Budget implements Serializable {
      * @param amount the amount to add to spent
      */
     public void addExpense(double amount) {
-        this.spent += amount;
+        this.spentCents += Money.toCents(amount);
     }
 
     /**
@@ -100,7 +136,7 @@ public class Budget implements Serializable {
      * @return the remaining amount
      */
     public double getRemaining() {
-        return amount - spent;
+        return Money.toAmount(amountCents - spentCents);
     }
 
     /**
@@ -108,8 +144,8 @@ public class Budget implements Serializable {
      * @return the percentage spent (0-100)
      */
     public double getPercentSpent() {
-        if (amount == 0) return 0;
-        return (spent / amount) * 100;
+        if (amountCents == 0) return 0;
+        return ((double) spentCents / amountCents) * 100;
     }
 
     /**
@@ -117,7 +153,7 @@ public class Budget implements Serializable {
      * @return true if spent exceeds amount
      */
     public boolean isOverBudget() {
-        return spent > amount;
+        return spentCents > amountCents;
     }
 
 
@@ -136,9 +172,9 @@ public class Budget implements Serializable {
         this.id = id;
         this.period = YearMonth.of(year, month);
         this.category = category;
-        this.amount = amount;
+        this.amountCents = Money.toCents(amount);
         this.notes = "";
-        this.spent = 0.0;
+        this.spentCents = 0;
     }
     
     @Override
@@ -167,11 +203,18 @@ public Category getCategory() {
 
 
 public double getAmount() {
-    return amount;
+    return Money.toAmount(amountCents);
 }
 
 public void setAmount(double amount) {
-    this.amount = amount;
+    this.amountCents = Money.toCents(amount);
+}
+
+/**
+ * Get the maximum amount for this budget period in whole cents
+ */
+public long getAmountCents() {
+    return amountCents;
 }
 
 public String getNotes() {
@@ -185,7 +228,7 @@ public void setNotes(String notes) {
 @Override
 public String toString() {
     return String.format("%s - %s - $%.2f",
-            period.toString(), category.getName(), amount);
+            period.toString(), category.getName(), getAmount());
 }
 
 public void setCategory(Category category) {
@@ -193,11 +236,18 @@ public void setCategory(Category category) {
 }
 
 public double getPlannedAmount() {
-    return plannedAmount;
+    return Money.toAmount(plannedAmountCents);
 }
 
 public void setPlannedAmount(double plannedAmount) {
-    this.plannedAmount = plannedAmount;
+    this.plannedAmountCents = Money.toCents(plannedAmount);
+}
+
+/**
+ * Get the planned amount in whole cents
+ */
+public long getPlannedAmountCents() {
+    return plannedAmountCents;
 }
 
 public YearMonth getPeriod() {
@@ -271,4 +321,32 @@ public String getDateRange() {
 private void updateDates() {
     this.startDate = String.valueOf(period.atDay(1));
     this.endDate = String.valueOf(period.atEndOfMonth());
-}}
\ No newline at end of file
+}
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("period", period);
+        fields.put("category", category);
+        fields.put("amount", getAmount());
+        fields.put("notes", notes);
+        fields.put("spent", getSpent());
+        fields.put("plannedAmount", getPlannedAmount());
+        fields.put("startDate", startDate);
+        fields.put("endDate", endDate);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = (String) fields.get("id", null);
+        period = (YearMonth) fields.get("period", null);
+        category = (Category) fields.get("category", null);
+        amountCents = Money.toCents(fields.get("amount", 0.0));
+        notes = (String) fields.get("notes", null);
+        spentCents = Money.toCents(fields.get("spent", 0.0));
+        plannedAmountCents = Money.toCents(fields.get("plannedAmount", 0.0));
+        startDate = (String) fields.get("startDate", null);
+        endDate = (String) fields.get("endDate", null);
+    }
+}
\ No newline at end of file
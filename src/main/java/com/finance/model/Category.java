@@ -3,7 +3,8 @@ package com.finance.model;
 
 import java.awt.Color;
 import java.io.Serializable;
-
+import java.util.HashMap;
+import java.util.Map;
 
 
 /**
@@ -11,6 +12,9 @@ import java.io.Serializable;
  * Demonstrates encapsulation
  */
 public class Category implements Serializable {
+    // Value computed from the class as first released, kept so stored data stays readable
+    private static final long serialVersionUID = -7210336581585823471L;
+
     // --- extracted constants to remove magic literals ---
     private static final String DEFAULT_NAME = "Uncategorized";
     private static final String DEFAULT_DESCRIPTION = "Default category";
@@ -32,6 +36,10 @@ public class Category implements Serializable {
     private TransactionType type;
     private String description;
     private Color color;
+
+    // Dense ordinals, one per category name, so totals can be kept in arrays
+    private static final Map<String, Integer> ORDINALS = new HashMap<>();
+    private transient int ordinal; // ordinal + 1, 0 until first asked for
     
     public Category(int id, String name, TransactionType type) {
         this.id = id;
@@ -74,6 +82,30 @@ public class Category implements Serializable {
     
     public void setName(String name) {
         this.name = name;
+        this.ordinal = 0;
+    }
+
+    /**
+     * Get the dense ordinal of this category. Categories with the same
+     * name share an ordinal; ordinals start at 0 and are assigned in the
+     * order names are first seen.
+     */
+    public int getOrdinal() {
+        if (ordinal == 0) {
+            synchronized (ORDINALS) {
+                ordinal = ORDINALS.computeIfAbsent(name, n -> ORDINALS.size()) + 1;
+            }
+        }
+        return ordinal - 1;
+    }
+
+    /**
+     * Get the number of ordinals assigned so far
+     */
+    public static int getOrdinalCount() {
+        synchronized (ORDINALS) {
+            return ORDINALS.size();
+        }
     }
     
     public TransactionType getType() {
@@ -116,4 +148,11 @@ public class Category implements Serializable {
     public String toString() {
         return name;
     }
+
+    /**
+     * Resolve a deserialized copy to the canonical instance
+     */
+    private Object readResolve() {
+        return CategoryRegistry.intern(this);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.finance.model;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical category instances, one per id and name. Categories read back
+ * from storage resolve to the registered instance, so every transaction
+ * and budget of a category shares one Category (and one Color) instead of
+ * carrying its own copy, and identity comparisons between them hold.
+ */
+public final class CategoryRegistry {
+    private static final Map<Key, Category> CATEGORIES = new ConcurrentHashMap<>();
+
+    static {
+        register(Category.DEFAULT_CATEGORY);
+    }
+
+    // Private constructor to prevent instantiation
+    private CategoryRegistry() {}
+
+    /**
+     * Get the canonical instance of a category, registering it if there is
+     * none with its id and name yet
+     *
+     * @param category the category, or null
+     * @return the canonical instance, or null
+     */
+    public static Category intern(Category category) {
+        if (category == null) return null;
+        Category existing = CATEGORIES.putIfAbsent(new Key(category), category);
+        return existing != null ? existing : category;
+    }
+
+    /**
+     * Make a category the canonical instance for its id and name, replacing
+     * one registered before. Used when a category is edited, so categories
+     * read back afterwards resolve to the edited one.
+     */
+    public static void register(Category category) {
+        if (category != null) {
+            CATEGORIES.put(new Key(category), category);
+        }
+    }
+
+    /**
+     * Id and name of a category at the time it was registered
+     */
+    private static final class Key {
+        private final int id;
+        private final String name;
+
+        Key(Category category) {
+            this.id = category.getId();
+            this.name = category.getName();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return id == other.id && Objects.equals(name, other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * id + Objects.hashCode(name);
+        }
+    }
+}
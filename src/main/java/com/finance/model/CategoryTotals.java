@@ -0,0 +1,121 @@
+package com.finance.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Amounts and counts per category, kept in arrays indexed by
+ * {@link Category#getOrdinal()}. Categories with the same name are counted
+ * together, and adding an amount does not allocate once the arrays cover
+ * the categories in use.
+ *
+ * Not thread-safe.
+ */
+public final class CategoryTotals {
+    // Slot 0 is for amounts without a category, slot ordinal + 1 for the rest
+    private long[] cents;
+    private long[] counts;
+    private Category[] categories; // first category seen for each slot
+
+    /**
+     * Constructor for empty totals
+     */
+    public CategoryTotals() {
+        int slots = Category.getOrdinalCount() + 1;
+        cents = new long[slots];
+        counts = new long[slots];
+        categories = new Category[slots];
+    }
+
+    /**
+     * Add a transaction's amount to its category
+     */
+    public void add(Transaction transaction) {
+        add(transaction.getCategory(), transaction.getAmountCents(), 1);
+    }
+
+    /**
+     * Add an amount to a category
+     *
+     * @param category the category, or null
+     * @param amountCents the amount in whole cents
+     * @param count the number of transactions the amount stands for
+     */
+    public void add(Category category, long amountCents, long count) {
+        int slot = slot(category);
+        if (slot >= cents.length) {
+            int slots = Math.max(slot + 1, cents.length * 2);
+            cents = Arrays.copyOf(cents, slots);
+            counts = Arrays.copyOf(counts, slots);
+            categories = Arrays.copyOf(categories, slots);
+        }
+        if (categories[slot] == null) {
+            categories[slot] = category;
+        }
+        cents[slot] += amountCents;
+        counts[slot] += count;
+    }
+
+    /**
+     * Add all totals of another instance, for merging partial totals
+     */
+    public void addAll(CategoryTotals other) {
+        for (int slot = 0; slot < other.counts.length; slot++) {
+            if (other.counts[slot] != 0) {
+                add(other.categories[slot], other.cents[slot], other.counts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Get the total of a category in whole cents
+     */
+    public long getCents(Category category) {
+        int slot = slot(category);
+        return slot < cents.length ? cents[slot] : 0;
+    }
+
+    /**
+     * Get the total of a category
+     */
+    public double getAmount(Category category) {
+        return Money.toAmount(getCents(category));
+    }
+
+    /**
+     * Get the number of transactions added for a category
+     */
+    public long getCount(Category category) {
+        int slot = slot(category);
+        return slot < counts.length ? counts[slot] : 0;
+    }
+
+    /**
+     * Check whether nothing has been added
+     */
+    public boolean isEmpty() {
+        for (long count : counts) {
+            if (count != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the totals as amounts, keyed by the first category seen with
+     * each name. Categories nothing was added for are left out.
+     */
+    public Map<Category, Double> toMap() {
+        Map<Category, Double> result = new HashMap<>();
+        for (int slot = 0; slot < counts.length; slot++) {
+            if (counts[slot] != 0) {
+                result.put(categories[slot], Money.toAmount(cents[slot]));
+            }
+        }
+        return result;
+    }
+
+    private static int slot(Category category) {
+        return category == null ? 0 : category.getOrdinal() + 1;
+    }
+}
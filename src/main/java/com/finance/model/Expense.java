@@ -14,6 +14,8 @@ import java.time.LocalDate;
  */
 
 public class Expense extends Transaction {
+    private static final long serialVersionUID = 7816690305475789593L;
+
     private PaymentMethod paymentMethod;
     private boolean isEssential;
 
@@ -24,6 +26,16 @@ public class Expense extends Transaction {
         this.isEssential = isEssential;
     }
 
+    /**
+     * Constructor that takes an existing id, used when restoring stored transactions
+     */
+    public Expense(String id, double amount, String description, LocalDate date, Category category,
+                  PaymentMethod paymentMethod, boolean isEssential) {
+        super(id, amount, description, date, category);
+        this.paymentMethod = paymentMethod;
+        this.isEssential = isEssential;
+    }
+
     public PaymentMethod getPaymentMethod() {
         return paymentMethod;
     }
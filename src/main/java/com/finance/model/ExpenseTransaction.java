@@ -6,11 +6,19 @@ import java.time.LocalDate;
  * Concrete implementation of Expense Transaction
  */
 public class ExpenseTransaction extends Transaction {
+    private static final long serialVersionUID = 5588140686216698607L;
     
     public ExpenseTransaction(double amount, String description, LocalDate date, Category category) {
         super(amount, description, date, category);
     }
     
+    /**
+     * Constructor that takes an existing id, used when restoring stored transactions
+     */
+    public ExpenseTransaction(String id, double amount, String description, LocalDate date, Category category) {
+        super(id, amount, description, date, category);
+    }
+    
     @Override
     public TransactionType getType() {
         return TransactionType.EXPENSE;
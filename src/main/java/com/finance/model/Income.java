@@ -7,6 +7,8 @@ import java.time.LocalDate;
  * Demonstrates inheritance.
  */
 public class Income extends Transaction {
+    private static final long serialVersionUID = 8300541013598785369L;
+
     private IncomeSource source;
 
     public Income(double amount, String description, LocalDate date, Category category, IncomeSource source) {
@@ -14,6 +16,15 @@ public class Income extends Transaction {
         this.source = source;
     }
 
+    /**
+     * Constructor that takes an existing id, used when restoring stored transactions
+     */
+    public Income(String id, double amount, String description, LocalDate date, Category category,
+                  IncomeSource source) {
+        super(id, amount, description, date, category);
+        this.source = source;
+    }
+
     public IncomeSource getSource() {
         return source;
     }
@@ -6,11 +6,19 @@ import java.time.LocalDate;
  * Concrete implementation of Income Transaction
  */
 public class IncomeTransaction extends Transaction {
+    private static final long serialVersionUID = 1559508586599450931L;
     
     public IncomeTransaction(double amount, String description, LocalDate date, Category category) {
         super(amount, description, date, category);
     }
     
+    /**
+     * Constructor that takes an existing id, used when restoring stored transactions
+     */
+    public IncomeTransaction(String id, double amount, String description, LocalDate date, Category category) {
+        super(id, amount, description, date, category);
+    }
+    
     @Override
     public TransactionType getType() {
         return TransactionType.INCOME;
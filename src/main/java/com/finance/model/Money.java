@@ -0,0 +1,25 @@
+package com.finance.model;
+
+/**
+ * Conversions between amounts and whole cents. Amounts are stored and
+ * added up as long cents, which is exact; doubles are only used at the
+ * edges, for entry and display.
+ */
+public final class Money {
+    // Private constructor to prevent instantiation
+    private Money() {}
+
+    /**
+     * Convert an amount to whole cents, rounding to the nearest cent
+     */
+    public static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Convert whole cents to an amount
+     */
+    public static double toAmount(long cents) {
+        return cents / 100.0;
+    }
+}
@@ -1,5 +1,9 @@
 package com.finance.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.util.UUID;
@@ -7,11 +11,27 @@ import java.util.UUID;
 /**
  * Abstract base class for all financial transactions.
  * Demonstrates encapsulation through private fields and public getters/setters.
+ * 
+ * The amount is held in whole cents. The serialized form still stores it
+ * as a double amount, so existing data files and journals keep loading.
  */
 public abstract class Transaction implements Serializable {
+    // Matches the value computed for the original class so existing data files still load
+    private static final long serialVersionUID = -608191239579392236L;
+
+    // Fields of the serialized form, which predates amounts in cents
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("id", String.class),
+        new ObjectStreamField("amount", double.class),
+        new ObjectStreamField("description", String.class),
+        new ObjectStreamField("date", LocalDate.class),
+        new ObjectStreamField("category", Category.class),
+        new ObjectStreamField("notes", String.class)
+    };
+
     // Encapsulation with private fields
-    private final String id;
-    private double amount;
+    private String id; // only assigned on construction and deserialization
+    private long amountCents;
     private String description;
     private LocalDate date;
     private Category category;
@@ -19,8 +39,15 @@ public abstract class Transaction implements Serializable {
     
     // Constructor
     public Transaction(double amount, String description, LocalDate date, Category category) {
-        this.id = UUID.randomUUID().toString();
-        this.amount = amount;
+        this(UUID.randomUUID().toString(), amount, description, date, category);
+    }
+
+    /**
+     * Constructor that takes an existing id, used when restoring stored transactions
+     */
+    protected Transaction(String id, double amount, String description, LocalDate date, Category category) {
+        this.id = id;
+        this.amountCents = Money.toCents(amount);
         this.description = description;
         this.date = date;
         this.category = category;
@@ -36,11 +63,22 @@ public abstract class Transaction implements Serializable {
     }
 
     public double getAmount() {
-        return amount;
+        return Money.toAmount(amountCents);
     }
 
     public void setAmount(double amount) {
-        this.amount = amount;
+        this.amountCents = Money.toCents(amount);
+    }
+
+    /**
+     * Get the amount in whole cents, for exact sums
+     */
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    public void setAmountCents(long amountCents) {
+        this.amountCents = amountCents;
     }
 
     public String getDescription() {
@@ -82,6 +120,27 @@ public abstract class Transaction implements Serializable {
     @Override
     public String toString() {
         return String.format("%s - $%.2f - %s - %s",
-                date, amount, category.getName(), description);
+                date, getAmount(), category.getName(), description);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("amount", getAmount());
+        fields.put("description", description);
+        fields.put("date", date);
+        fields.put("category", category);
+        fields.put("notes", notes);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = (String) fields.get("id", null);
+        amountCents = Money.toCents(fields.get("amount", 0.0));
+        description = (String) fields.get("description", null);
+        date = (LocalDate) fields.get("date", null);
+        category = (Category) fields.get("category", null);
+        notes = (String) fields.get("notes", null);
     }
 }
@@ -0,0 +1,79 @@
+package com.finance.service;
+
+import com.finance.model.Budget;
+
+/**
+ * A budget reaching a spending threshold, or heading past its limit at
+ * the current rate of spending
+ */
+public final class BudgetAlert {
+    /**
+     * What the alert is about
+     */
+    public enum Kind {
+        THRESHOLD_CROSSED, PROJECTED_OVERRUN
+    }
+
+    private final Budget budget;
+    private final Kind kind;
+    private final double threshold;
+    private final double percentSpent;
+    private final double projectedSpent;
+
+    BudgetAlert(Budget budget, Kind kind, double threshold, double percentSpent, double projectedSpent) {
+        this.budget = budget;
+        this.kind = kind;
+        this.threshold = threshold;
+        this.percentSpent = percentSpent;
+        this.projectedSpent = projectedSpent;
+    }
+
+    public Budget getBudget() {
+        return budget;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Get the threshold crossed, in percent of the budget amount;
+     * 100 for a projected overrun
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Get the percentage of the budget spent when the alert was raised
+     */
+    public double getPercentSpent() {
+        return percentSpent;
+    }
+
+    /**
+     * Get the amount that will have been spent by the end of the period
+     * if spending goes on at the average daily rate so far
+     */
+    public double getProjectedSpent() {
+        return projectedSpent;
+    }
+
+    /**
+     * Get a message describing the alert for the user
+     */
+    public String getMessage() {
+        String category = budget.getCategory() == null ? "Uncategorized" : budget.getCategory().getName();
+        if (kind == Kind.PROJECTED_OVERRUN) {
+            return String.format("%s budget for %s is on track to reach $%.2f of $%.2f",
+                category, budget.getPeriod(), projectedSpent, budget.getAmount());
+        }
+        return String.format("%s budget for %s has reached %.0f%% ($%.2f of $%.2f)",
+            category, budget.getPeriod(), threshold, budget.getSpent(), budget.getAmount());
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
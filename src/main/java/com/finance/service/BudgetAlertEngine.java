@@ -0,0 +1,215 @@
+package com.finance.service;
+
+import com.finance.data.BudgetListener;
+import com.finance.data.DataManager;
+import com.finance.data.TransactionListener;
+import com.finance.model.Budget;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Checks budget thresholds as transactions are recorded. After each change
+ * the budgets of the months it touched are looked up in the data manager's
+ * budget index, whose spent amounts are already current, and an alert is
+ * raised when a budget reaches a threshold it had not reached before (75%,
+ * 90% and 100% of its amount by default). A budget for the current month
+ * also raises an alert when spending on at its average daily rate so far
+ * would take it over its amount by the end of the month.
+ *
+ * Budgets are checked even while notifications are turned off in the user
+ * preferences, so turning them back on does not replay old alerts; only
+ * delivery to the listeners is skipped. Likewise a budget that is saved or
+ * edited is recorded where it stands, without alerts.
+ */
+public class BudgetAlertEngine implements TransactionListener, BudgetListener {
+    private static final double[] DEFAULT_THRESHOLDS = {75, 90, 100};
+
+    private final DataManager dataManager;
+    private final Clock clock;
+    private final List<BudgetAlertListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by this
+    private double[] thresholds = DEFAULT_THRESHOLDS;
+    private final Map<String, State> states = new HashMap<>(); // by budget id
+
+    /**
+     * Create an engine for the budgets of a data manager
+     */
+    public BudgetAlertEngine(DataManager dataManager) {
+        this(dataManager, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Create an engine that takes the current date from a clock
+     */
+    public BudgetAlertEngine(DataManager dataManager, Clock clock) {
+        this.dataManager = dataManager;
+        this.clock = clock;
+    }
+
+    /**
+     * Start checking budgets as transactions change. Thresholds the
+     * budgets have already reached do not raise alerts.
+     */
+    public void start() {
+        rebaseline();
+        dataManager.addTransactionListener(this);
+        dataManager.addBudgetListener(this);
+    }
+
+    /**
+     * Stop checking budgets
+     */
+    public void stop() {
+        dataManager.removeTransactionListener(this);
+        dataManager.removeBudgetListener(this);
+    }
+
+    public void addBudgetAlertListener(BudgetAlertListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeBudgetAlertListener(BudgetAlertListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Get the thresholds alerts are raised at, in percent of the budget
+     * amount, in ascending order
+     */
+    public synchronized double[] getThresholds() {
+        return thresholds.clone();
+    }
+
+    /**
+     * Set the thresholds alerts are raised at. Thresholds the budgets
+     * have already reached do not raise alerts.
+     *
+     * @param percents percentages of the budget amount, greater than 0
+     * @throws IllegalArgumentException if no threshold is given or one is not positive
+     */
+    public void setThresholds(double... percents) {
+        if (percents.length == 0) {
+            throw new IllegalArgumentException("At least one threshold is required");
+        }
+        double[] sorted = percents.clone();
+        Arrays.sort(sorted);
+        if (!(sorted[0] > 0)) {
+            throw new IllegalArgumentException("Thresholds must be greater than 0: " + Arrays.toString(percents));
+        }
+
+        synchronized (this) {
+            thresholds = sorted;
+        }
+        rebaseline();
+    }
+
+    /**
+     * Get the number of thresholds a percentage of a budget has reached
+     *
+     * @param percentSpent the percentage of the budget amount spent
+     * @return 0 below the lowest threshold, up to the number of thresholds
+     */
+    public synchronized int thresholdsReached(double percentSpent) {
+        int reached = 0;
+        while (reached < thresholds.length && percentSpent >= thresholds[reached]) {
+            reached++;
+        }
+        return reached;
+    }
+
+    @Override
+    public void transactionsChanged(long version, Set<YearMonth> months) {
+        if (months == null) {
+            // Everything was reloaded; nothing was recorded
+            rebaseline();
+            return;
+        }
+
+        List<Budget> budgets = new ArrayList<>();
+        for (YearMonth month : months) {
+            budgets.addAll(dataManager.getBudgets(month));
+        }
+        if (budgets.isEmpty()) return;
+
+        List<BudgetAlert> alerts = new ArrayList<>();
+        synchronized (this) {
+            for (Budget budget : budgets) {
+                check(budget, alerts);
+            }
+        }
+
+        if (alerts.isEmpty() || !dataManager.loadUserPreferences().isShowNotifications()) return;
+        List<BudgetAlert> raised = Collections.unmodifiableList(alerts);
+        for (BudgetAlertListener listener : listeners) {
+            listener.budgetAlerts(raised);
+        }
+    }
+
+    @Override
+    public void budgetsChanged() {
+        rebaseline();
+    }
+
+    /**
+     * Record where every budget stands without raising alerts
+     */
+    private void rebaseline() {
+        List<Budget> budgets = dataManager.getAllBudgets();
+        synchronized (this) {
+            states.clear();
+            for (Budget budget : budgets) {
+                check(budget, new ArrayList<>());
+            }
+        }
+    }
+
+    /**
+     * Compare a budget with where it stood last time and add an alert for
+     * the highest threshold newly reached and for a newly projected overrun
+     */
+    private void check(Budget budget, List<BudgetAlert> alerts) {
+        if (budget.getId() == null || budget.getAmountCents() <= 0) return;
+
+        State state = states.computeIfAbsent(budget.getId(), id -> new State());
+        double percentSpent = budget.getPercentSpent();
+
+        int reached = thresholdsReached(percentSpent);
+        if (reached > state.reached) {
+            alerts.add(new BudgetAlert(budget, BudgetAlert.Kind.THRESHOLD_CROSSED,
+                thresholds[reached - 1], percentSpent, budget.getSpent()));
+        }
+        state.reached = reached;
+
+        long projectedCents = projectedSpentCents(budget);
+        boolean overrun = projectedCents > budget.getAmountCents() && !budget.isOverBudget();
+        if (overrun && !state.overrunProjected) {
+            alerts.add(new BudgetAlert(budget, BudgetAlert.Kind.PROJECTED_OVERRUN,
+                100, percentSpent, projectedCents / 100.0));
+        }
+        state.overrunProjected = overrun;
+    }
+
+    /**
+     * Project spending to the end of the budget's period at the average
+     * daily rate so far. Only budgets of the current month are projected.
+     */
+    private long projectedSpentCents(Budget budget) {
+        LocalDate today = LocalDate.now(clock);
+        if (!YearMonth.from(today).equals(budget.getPeriod())) return budget.getSpentCents();
+
+        return budget.getSpentCents() * today.lengthOfMonth() / today.getDayOfMonth();
+    }
+
+    /**
+     * What was last seen of a budget
+     */
+    private static final class State {
+        private int reached;
+        private boolean overrunProjected;
+    }
+}
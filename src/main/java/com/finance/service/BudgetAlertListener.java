@@ -0,0 +1,15 @@
+package com.finance.service;
+
+import java.util.List;
+
+/**
+ * Interface for components that want to be told about budget alerts
+ */
+public interface BudgetAlertListener {
+    /**
+     * Called on the thread that recorded the expense, once per change
+     *
+     * @param alerts the alerts the change raised, at least one
+     */
+    void budgetAlerts(List<BudgetAlert> alerts);
+}
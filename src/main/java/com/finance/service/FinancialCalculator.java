@@ -1,19 +1,31 @@
 package com.finance.service;
 
+import com.finance.data.AggregateCell;
+import com.finance.data.DataManager;
 import com.finance.model.*;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 /**
  * Utility class with static methods for financial calculations
  * Demonstrates static methods and utility patterns
  */
 public class FinancialCalculator {
+    // Lists at least this long are folded in parallel, in chunks of CHUNK_SIZE
+    private static final int PARALLEL_THRESHOLD = 100_000;
+    private static final int CHUNK_SIZE = 16_384;
+    
     // Private constructor to prevent instantiation
     private FinancialCalculator() {}
     
@@ -21,45 +33,28 @@ public class FinancialCalculator {
      * Calculate total income for a given period
      */
     public static double calculateTotalIncome(List<Transaction> transactions, LocalDate startDate, LocalDate endDate) {
-        return transactions.stream()
-                .filter(t -> t.getType() == TransactionType.INCOME)
-                .filter(t -> !t.getDate().isBefore(startDate) && !t.getDate().isAfter(endDate))
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+        return summarize(transactions, startDate, endDate).getTotalIncome();
     }
     
     /**
      * Calculate total expenses for a given period
      */
     public static double calculateTotalExpenses(List<Transaction> transactions, LocalDate startDate, LocalDate endDate) {
-        return transactions.stream()
-                .filter(t -> t.getType() == TransactionType.EXPENSE)
-                .filter(t -> !t.getDate().isBefore(startDate) && !t.getDate().isAfter(endDate))
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+        return summarize(transactions, startDate, endDate).getTotalExpenses();
     }
     
     /**
      * Calculate net savings (income - expenses) for a given period
      */
     public static double calculateNetSavings(List<Transaction> transactions, LocalDate startDate, LocalDate endDate) {
-        double income = calculateTotalIncome(transactions, startDate, endDate);
-        double expenses = calculateTotalExpenses(transactions, startDate, endDate);
-        return income - expenses;
+        return summarize(transactions, startDate, endDate).getNetSavings();
     }
     
     /**
      * Calculate savings rate (savings / income) for a given period
      */
     public static double calculateSavingsRate(List<Transaction> transactions, LocalDate startDate, LocalDate endDate) {
-        double income = calculateTotalIncome(transactions, startDate, endDate);
-        double netSavings = calculateNetSavings(transactions, startDate, endDate);
-        
-        if (income == 0) {
-            return 0;
-        }
-        
-        return netSavings / income;
+        return summarize(transactions, startDate, endDate).getSavingsRate();
     }
     
     /**
@@ -67,20 +62,7 @@ public class FinancialCalculator {
      */
     public static Map<Category, Double> calculateExpensesByCategory(List<Transaction> transactions, 
                                                 LocalDate startDate, LocalDate endDate) {
-        Map<Category, Double> expensesByCategory = new HashMap<>();
-        
-        List<Transaction> filteredTransactions = transactions.stream()
-                .filter(t -> t.getType() == TransactionType.EXPENSE)
-                .filter(t -> !t.getDate().isBefore(startDate) && !t.getDate().isAfter(endDate))
-                .collect(Collectors.toList());
-        
-        for (Transaction transaction : filteredTransactions) {
-            Category category = transaction.getCategory();
-            double currentAmount = expensesByCategory.getOrDefault(category, 0.0);
-            expensesByCategory.put(category, currentAmount + transaction.getAmount());
-        }
-        
-        return expensesByCategory;
+        return totalsByCategory(transactions, TransactionType.EXPENSE, startDate, endDate).toMap();
     }
     
     /**
@@ -88,20 +70,19 @@ public class FinancialCalculator {
      */
     public static Map<Category, Double> calculateIncomeByCategory(List<Transaction> transactions, 
                                                LocalDate startDate, LocalDate endDate) {
-        Map<Category, Double> incomeByCategory = new HashMap<>();
-        
-        List<Transaction> filteredTransactions = transactions.stream()
-                .filter(t -> t.getType() == TransactionType.INCOME)
-                .filter(t -> !t.getDate().isBefore(startDate) && !t.getDate().isAfter(endDate))
-                .collect(Collectors.toList());
-        
-        for (Transaction transaction : filteredTransactions) {
-            Category category = transaction.getCategory();
-            double currentAmount = incomeByCategory.getOrDefault(category, 0.0);
-            incomeByCategory.put(category, currentAmount + transaction.getAmount());
-        }
-        
-        return incomeByCategory;
+        return totalsByCategory(transactions, TransactionType.INCOME, startDate, endDate).toMap();
+    }
+    
+    /**
+     * Add up the transactions of one type in a period per category
+     */
+    private static CategoryTotals totalsByCategory(List<Transaction> transactions, TransactionType type,
+                                                   LocalDate startDate, LocalDate endDate) {
+        return aggregate(transactions, CategoryTotals::new, (totals, transaction) -> {
+            if (transaction.getType() == type && isWithin(transaction, startDate, endDate)) {
+                totals.add(transaction);
+            }
+        }, CategoryTotals::addAll);
     }
     
     /**
@@ -114,13 +95,13 @@ public class FinancialCalculator {
         LocalDate endDate = period.atEndOfMonth();
         
         // Calculate expenses by category
-        Map<Category, Double> expensesByCategory = calculateExpensesByCategory(
-            transactions, startDate, endDate);
+        CategoryTotals expensesByCategory = totalsByCategory(
+            transactions, TransactionType.EXPENSE, startDate, endDate);
         
         // Calculate status for each budget
         for (Budget budget : budgets) {
             if (budget.getPeriod().equals(period)) {
-                double actual = expensesByCategory.getOrDefault(budget.getCategory(), 0.0);
+                double actual = expensesByCategory.getAmount(budget.getCategory());
                 double remaining = budget.getPlannedAmount() - actual;
                 budgetStatus.put(budget, remaining);
             }
@@ -183,29 +164,270 @@ public class FinancialCalculator {
      */
     public static double calculateEssentialExpensesRatio(List<Transaction> transactions, 
                                     LocalDate startDate, LocalDate endDate) {
-        List<Transaction> filteredTransactions = transactions.stream()
-                .filter(t -> t.getType() == TransactionType.EXPENSE)
-                .filter(t -> !t.getDate().isBefore(startDate) && !t.getDate().isAfter(endDate))
-                .collect(Collectors.toList());
+        return summarize(transactions, startDate, endDate).getEssentialExpensesRatio();
+    }
+    
+    /**
+     * Collect all figures for a period in a single pass over the transactions
+     */
+    public static PeriodSummary summarize(List<Transaction> transactions, LocalDate startDate, LocalDate endDate) {
+        return aggregate(transactions, () -> new PeriodSummary(startDate, endDate), (summary, transaction) -> {
+            if (isWithin(transaction, startDate, endDate)) {
+                summary.add(transaction);
+            }
+        }, PeriodSummary::addAll);
+    }
+    
+    /**
+     * Collect the figures of every month of a period in a single pass over
+     * the transactions
+     * 
+     * @return a summary per month, in order, including months without transactions
+     */
+    public static Map<YearMonth, PeriodSummary> summarizeByMonth(List<Transaction> transactions, 
+                                              LocalDate startDate, LocalDate endDate) {
+        return aggregate(transactions, () -> {
+            Map<YearMonth, PeriodSummary> summaries = new TreeMap<>();
+            for (YearMonth month = YearMonth.from(startDate); !month.isAfter(YearMonth.from(endDate)); month = month.plusMonths(1)) {
+                LocalDate monthStart = month.atDay(1).isBefore(startDate) ? startDate : month.atDay(1);
+                LocalDate monthEnd = month.atEndOfMonth().isAfter(endDate) ? endDate : month.atEndOfMonth();
+                summaries.put(month, new PeriodSummary(monthStart, monthEnd));
+            }
+            return summaries;
+        }, (summaries, transaction) -> {
+            if (isWithin(transaction, startDate, endDate)) {
+                summaries.get(YearMonth.from(transaction.getDate())).add(transaction);
+            }
+        }, (summaries, other) -> {
+            for (Map.Entry<YearMonth, PeriodSummary> entry : other.entrySet()) {
+                summaries.get(entry.getKey()).addAll(entry.getValue());
+            }
+        });
+    }
+    
+    /**
+     * Check whether a transaction is dated within a period, both ends included
+     */
+    private static boolean isWithin(Transaction transaction, LocalDate startDate, LocalDate endDate) {
+        LocalDate date = transaction.getDate();
+        return date != null && !date.isBefore(startDate) && !date.isAfter(endDate);
+    }
+    
+    /**
+     * Fold transactions into a result. Lists of PARALLEL_THRESHOLD
+     * transactions or more are split into chunks folded into partial
+     * results on the common ForkJoinPool, which are then combined in list
+     * order. Amounts are added up as whole cents, so the result does not
+     * depend on how the list was split.
+     * 
+     * @param partial creates an empty partial result
+     * @param accumulator adds one transaction to a partial result
+     * @param combiner adds the second partial result to the first
+     */
+    private static <R> R aggregate(List<Transaction> transactions, Supplier<R> partial,
+                                   BiConsumer<R, Transaction> accumulator, BiConsumer<R, R> combiner) {
+        if (transactions.size() < PARALLEL_THRESHOLD) {
+            R result = partial.get();
+            for (Transaction transaction : transactions) {
+                accumulator.accept(result, transaction);
+            }
+            return result;
+        }
         
-        double essentialExpenses = 0;
-        double totalExpenses = 0;
+        List<Transaction> chunked = transactions instanceof RandomAccess ? transactions : new ArrayList<>(transactions);
+        return ForkJoinPool.commonPool().invoke(
+            new ChunkTask<>(chunked, 0, chunked.size(), partial, accumulator, combiner));
+    }
+    
+    /**
+     * Folds a range of a list, splitting it in halves down to CHUNK_SIZE
+     */
+    private static final class ChunkTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 3870125126480397532L;
         
-        for (Transaction transaction : filteredTransactions) {
-            totalExpenses += transaction.getAmount();
-            
-            if (transaction instanceof Expense) {
-                Expense expense = (Expense) transaction;
-                if (expense.isEssential()) {
-                    essentialExpenses += expense.getAmount();
+        // Tasks are never serialized; ForkJoinTask is Serializable only by inheritance
+        private final transient List<Transaction> transactions;
+        private final int from;
+        private final int to;
+        private final transient Supplier<R> partial;
+        private final transient BiConsumer<R, Transaction> accumulator;
+        private final transient BiConsumer<R, R> combiner;
+        
+        ChunkTask(List<Transaction> transactions, int from, int to, Supplier<R> partial,
+                  BiConsumer<R, Transaction> accumulator, BiConsumer<R, R> combiner) {
+            this.transactions = transactions;
+            this.from = from;
+            this.to = to;
+            this.partial = partial;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+        
+        @Override
+        protected R compute() {
+            if (to - from <= CHUNK_SIZE) {
+                R result = partial.get();
+                for (int i = from; i < to; i++) {
+                    accumulator.accept(result, transactions.get(i));
                 }
+                return result;
             }
+            
+            int middle = (from + to) >>> 1;
+            ChunkTask<R> right = new ChunkTask<>(transactions, middle, to, partial, accumulator, combiner);
+            right.fork();
+            R result = new ChunkTask<>(transactions, from, middle, partial, accumulator, combiner).compute();
+            combiner.accept(result, right.join());
+            return result;
         }
+    }
+    
+    // The overloads below take a DataManager and answer from its aggregates
+    // per month, category and type instead of scanning the transactions.
+    // Results are kept in the data manager's QueryCache until a change
+    // touches one of the months they cover.
+    
+    /**
+     * Calculate total income for a given period
+     */
+    public static double calculateTotalIncome(DataManager dataManager, LocalDate startDate, LocalDate endDate) {
+        return QueryCache.of(dataManager).get(QueryCache.Query.TOTAL_INCOME, startDate, endDate, null,
+            () -> sumOf(dataManager.getAggregates(startDate, endDate), TransactionType.INCOME));
+    }
+    
+    /**
+     * Calculate total expenses for a given period
+     */
+    public static double calculateTotalExpenses(DataManager dataManager, LocalDate startDate, LocalDate endDate) {
+        return QueryCache.of(dataManager).get(QueryCache.Query.TOTAL_EXPENSES, startDate, endDate, null,
+            () -> sumOf(dataManager.getAggregates(startDate, endDate), TransactionType.EXPENSE));
+    }
+    
+    /**
+     * Calculate net savings (income - expenses) for a given period
+     */
+    public static double calculateNetSavings(DataManager dataManager, LocalDate startDate, LocalDate endDate) {
+        return calculateTotalIncome(dataManager, startDate, endDate)
+            - calculateTotalExpenses(dataManager, startDate, endDate);
+    }
+    
+    /**
+     * Calculate savings rate (savings / income) for a given period
+     */
+    public static double calculateSavingsRate(DataManager dataManager, LocalDate startDate, LocalDate endDate) {
+        double income = calculateTotalIncome(dataManager, startDate, endDate);
         
-        if (totalExpenses == 0) {
+        if (income == 0) {
             return 0;
         }
         
-        return essentialExpenses / totalExpenses;
+        return (income - calculateTotalExpenses(dataManager, startDate, endDate)) / income;
+    }
+    
+    /**
+     * Calculate expenses by category for a given period
+     */
+    public static Map<Category, Double> calculateExpensesByCategory(DataManager dataManager, 
+                                                LocalDate startDate, LocalDate endDate) {
+        Map<Category, Double> totals = QueryCache.of(dataManager).get(
+            QueryCache.Query.EXPENSES_BY_CATEGORY, startDate, endDate, null,
+            () -> sumByCategory(dataManager.getAggregates(startDate, endDate), TransactionType.EXPENSE));
+        return new HashMap<>(totals);
+    }
+    
+    /**
+     * Calculate income by category for a given period
+     */
+    public static Map<Category, Double> calculateIncomeByCategory(DataManager dataManager, 
+                                               LocalDate startDate, LocalDate endDate) {
+        Map<Category, Double> totals = QueryCache.of(dataManager).get(
+            QueryCache.Query.INCOME_BY_CATEGORY, startDate, endDate, null,
+            () -> sumByCategory(dataManager.getAggregates(startDate, endDate), TransactionType.INCOME));
+        return new HashMap<>(totals);
+    }
+    
+    /**
+     * Calculate the expenses of one category in a month.
+     * Categories with the same name are counted together.
+     */
+    public static double calculateCategoryExpenses(DataManager dataManager, Category category, YearMonth month) {
+        return QueryCache.of(dataManager).get(
+            QueryCache.Query.CATEGORY_EXPENSES, month.atDay(1), month.atEndOfMonth(), category,
+            () -> dataManager.getAggregate(month, category, TransactionType.EXPENSE).getSum());
+    }
+    
+    /**
+     * Check budget status for each category in the given period
+     */
+    public static Map<Budget, Double> calculateBudgetStatus(DataManager dataManager, 
+                                          List<Budget> budgets, YearMonth period) {
+        Map<Budget, Double> budgetStatus = new HashMap<>();
+        for (Budget budget : budgets) {
+            if (budget.getPeriod().equals(period)) {
+                double actual = calculateCategoryExpenses(dataManager, budget.getCategory(), period);
+                budgetStatus.put(budget, budget.getPlannedAmount() - actual);
+            }
+        }
+        return budgetStatus;
+    }
+    
+    /**
+     * Calculate average daily expense for a given period
+     */
+    public static double calculateAverageDailyExpense(DataManager dataManager, 
+                                    LocalDate startDate, LocalDate endDate) {
+        double totalExpenses = calculateTotalExpenses(dataManager, startDate, endDate);
+        long days = ChronoUnit.DAYS.between(startDate, endDate) + 1; // Include both start and end dates
+        
+        if (days <= 0) {
+            return 0;
+        }
+        
+        return totalExpenses / days;
+    }
+    
+    /**
+     * Calculate essential vs. non-essential expenses ratio
+     */
+    public static double calculateEssentialExpensesRatio(DataManager dataManager, 
+                                    LocalDate startDate, LocalDate endDate) {
+        // Essential is a property of each expense, not kept in the aggregates
+        return calculateEssentialExpensesRatio(dataManager.getTransactions(startDate, endDate), startDate, endDate);
+    }
+    
+    /**
+     * Collect all figures for a period, reading only the transactions in
+     * the period
+     */
+    public static PeriodSummary summarize(DataManager dataManager, LocalDate startDate, LocalDate endDate) {
+        return QueryCache.of(dataManager).get(QueryCache.Query.SUMMARY, startDate, endDate, null,
+            () -> summarize(dataManager.getTransactions(startDate, endDate), startDate, endDate));
+    }
+    
+    /**
+     * Add up the aggregate cells of one transaction type
+     */
+    private static double sumOf(List<AggregateCell> cells, TransactionType type) {
+        long cents = 0;
+        for (AggregateCell cell : cells) {
+            if (cell.getType() == type) {
+                cents += cell.getSumCents();
+            }
+        }
+        return Money.toAmount(cents);
+    }
+    
+    /**
+     * Add up the aggregate cells of one transaction type per category.
+     * Categories with the same name are counted together.
+     */
+    private static Map<Category, Double> sumByCategory(List<AggregateCell> cells, TransactionType type) {
+        CategoryTotals totals = new CategoryTotals();
+        for (AggregateCell cell : cells) {
+            if (cell.getType() == type) {
+                totals.add(cell.getCategory(), cell.getSumCents(), cell.getCount());
+            }
+        }
+        return totals.toMap();
     }
 }
@@ -0,0 +1,130 @@
+package com.finance.service;
+
+import com.finance.model.*;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Income and expense figures for one period, collected in a single pass
+ * over the transactions by {@link FinancialCalculator#summarize}
+ */
+public class PeriodSummary {
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    // Totals in whole cents
+    private long totalIncome;
+    private long totalExpenses;
+    private long essentialExpenses;
+    private final CategoryTotals incomeByCategory = new CategoryTotals();
+    private final CategoryTotals expensesByCategory = new CategoryTotals();
+
+    /**
+     * Constructor for an empty summary
+     */
+    PeriodSummary(LocalDate startDate, LocalDate endDate) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    /**
+     * Add a transaction dated within the period
+     */
+    void add(Transaction transaction) {
+        long amount = transaction.getAmountCents();
+        if (transaction.getType() == TransactionType.INCOME) {
+            totalIncome += amount;
+            incomeByCategory.add(transaction);
+        } else {
+            totalExpenses += amount;
+            expensesByCategory.add(transaction);
+            if (transaction instanceof Expense && ((Expense) transaction).isEssential()) {
+                essentialExpenses += amount;
+            }
+        }
+    }
+
+    /**
+     * Add the figures of a summary of the same period, collected over
+     * other transactions
+     */
+    void addAll(PeriodSummary other) {
+        totalIncome += other.totalIncome;
+        totalExpenses += other.totalExpenses;
+        essentialExpenses += other.essentialExpenses;
+        incomeByCategory.addAll(other.incomeByCategory);
+        expensesByCategory.addAll(other.expensesByCategory);
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public double getTotalIncome() {
+        return Money.toAmount(totalIncome);
+    }
+
+    public double getTotalExpenses() {
+        return Money.toAmount(totalExpenses);
+    }
+
+    /**
+     * Get net savings (income - expenses)
+     */
+    public double getNetSavings() {
+        return Money.toAmount(totalIncome - totalExpenses);
+    }
+
+    /**
+     * Get savings rate (savings / income), 0 without income
+     */
+    public double getSavingsRate() {
+        if (totalIncome == 0) {
+            return 0;
+        }
+        return (double) (totalIncome - totalExpenses) / totalIncome;
+    }
+
+    public Map<Category, Double> getIncomeByCategory() {
+        return Collections.unmodifiableMap(incomeByCategory.toMap());
+    }
+
+    public Map<Category, Double> getExpensesByCategory() {
+        return Collections.unmodifiableMap(expensesByCategory.toMap());
+    }
+
+    /**
+     * Get the expenses of the category with a given name
+     */
+    public double getExpenses(Category category) {
+        return expensesByCategory.getAmount(category);
+    }
+
+    /**
+     * Get the share of expenses marked essential, 0 without expenses
+     */
+    public double getEssentialExpensesRatio() {
+        if (totalExpenses == 0) {
+            return 0;
+        }
+        return (double) essentialExpenses / totalExpenses;
+    }
+
+    /**
+     * Get average daily expense over the period, both ends included
+     */
+    public double getAverageDailyExpense() {
+        long days = ChronoUnit.DAYS.between(startDate, endDate) + 1;
+
+        if (days <= 0) {
+            return 0;
+        }
+
+        return getTotalExpenses() / days;
+    }
+}
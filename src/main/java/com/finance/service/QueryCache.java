@@ -0,0 +1,220 @@
+package com.finance.service;
+
+import com.finance.data.DataManager;
+import com.finance.data.TransactionListener;
+import com.finance.model.Category;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Results of calculator queries against a DataManager, kept until a change
+ * touches the months they were computed from. Entries are keyed by query,
+ * date range and category, and tagged with the data manager's modification
+ * version when they were computed. A transaction change invalidates only
+ * the entries whose range covers one of the months it touched.
+ *
+ * Cached results are shared between callers and must not be modified.
+ * Thread-safe; queries are computed without holding the cache's lock.
+ */
+public final class QueryCache implements TransactionListener {
+    /**
+     * The kinds of query whose results are cached
+     */
+    public enum Query {
+        TOTAL_INCOME, TOTAL_EXPENSES, INCOME_BY_CATEGORY, EXPENSES_BY_CATEGORY, CATEGORY_EXPENSES, SUMMARY
+    }
+
+    // Least recently used entries are dropped beyond this many
+    private static final int MAX_ENTRIES = 256;
+
+    private static final Map<DataManager, QueryCache> CACHES =
+        Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final DataManager dataManager;
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    // Version of the last change to each month, and of the last reload
+    private final NavigableMap<YearMonth, Long> changedAt = new TreeMap<>();
+    private long reloadedAt;
+    private long hits;
+    private long misses;
+
+    private QueryCache(DataManager dataManager) {
+        this.dataManager = dataManager;
+    }
+
+    /**
+     * Get the cache for a data manager, creating it on first use
+     */
+    public static QueryCache of(DataManager dataManager) {
+        return CACHES.computeIfAbsent(dataManager, key -> {
+            QueryCache cache = new QueryCache(key);
+            key.addTransactionListener(cache);
+            return cache;
+        });
+    }
+
+    /**
+     * Get the result of a query, computing it if there is no current one
+     *
+     * @param query the kind of query
+     * @param startDate first day of the range, or null for no bound
+     * @param endDate last day of the range, or null for no bound
+     * @param category the category the query is restricted to, or null
+     * @param compute computes the result from the data manager
+     * @return the cached or computed result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Query query, LocalDate startDate, LocalDate endDate, Category category, Supplier<T> compute) {
+        Key key = new Key(query, startDate, endDate, category == null ? null : category.getName());
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && isCurrent(entry)) {
+                hits++;
+                return (T) entry.value;
+            }
+            misses++;
+        }
+
+        // Read the version first: a change made while computing has a
+        // higher version and keeps the result from being used
+        long version = dataManager.getModificationVersion();
+        T value = compute.get();
+
+        synchronized (this) {
+            Entry entry = new Entry(value, version, month(startDate), month(endDate));
+            if (isCurrent(entry)) {
+                entries.put(key, entry);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized void transactionsChanged(long version, Set<YearMonth> months) {
+        if (months == null) {
+            reloadedAt = Math.max(reloadedAt, version);
+            changedAt.clear();
+            entries.clear();
+            return;
+        }
+
+        for (YearMonth month : months) {
+            changedAt.merge(month, version, Math::max);
+        }
+        entries.values().removeIf(entry -> !isCurrent(entry));
+    }
+
+    /**
+     * Drop all cached results
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Get the number of queries answered from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of queries that had to be computed
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of results currently cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Check that no month the entry covers changed after it was computed.
+     * A range ending before the month it starts covers no months.
+     */
+    private boolean isCurrent(Entry entry) {
+        if (reloadedAt > entry.version) return false;
+        if (entry.firstMonth != null && entry.lastMonth != null
+                && entry.firstMonth.isAfter(entry.lastMonth)) {
+            return true;
+        }
+
+        NavigableMap<YearMonth, Long> covered = changedAt;
+        if (entry.firstMonth != null) {
+            covered = covered.tailMap(entry.firstMonth, true);
+        }
+        if (entry.lastMonth != null) {
+            covered = covered.headMap(entry.lastMonth, true);
+        }
+        for (long changed : covered.values()) {
+            if (changed > entry.version) return false;
+        }
+        return true;
+    }
+
+    private static YearMonth month(LocalDate date) {
+        return date == null ? null : YearMonth.from(date);
+    }
+
+    /**
+     * What was asked for
+     */
+    private static final class Key {
+        private final Query query;
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+        private final String categoryName;
+
+        Key(Query query, LocalDate startDate, LocalDate endDate, String categoryName) {
+            this.query = query;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.categoryName = categoryName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return query == other.query
+                && Objects.equals(startDate, other.startDate)
+                && Objects.equals(endDate, other.endDate)
+                && Objects.equals(categoryName, other.categoryName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, startDate, endDate, categoryName);
+        }
+    }
+
+    /**
+     * A result and the version and months it was computed from
+     */
+    private static final class Entry {
+        private final Object value;
+        private final long version;
+        private final YearMonth firstMonth; // null for no bound
+        private final YearMonth lastMonth;
+
+        Entry(Object value, long version, YearMonth firstMonth, YearMonth lastMonth) {
+            this.value = value;
+            this.version = version;
+            this.firstMonth = firstMonth;
+            this.lastMonth = lastMonth;
+        }
+    }
+}
@@ -0,0 +1,517 @@
+package com.finance.service;
+
+import com.finance.model.Transaction;
+import com.finance.model.TransactionType;
+
+import java.util.*;
+
+/**
+ * Typo-tolerant search over the words of the descriptions and notes of a
+ * list of transactions, returning the best matches first.
+ *
+ * Each distinct word maps to the transactions containing it and how often.
+ * A query word is expanded to the dictionary words within a few edits of
+ * it, found through a BK-tree, and to the words it starts, so results show
+ * up while the last word is still being typed. Transactions are scored with
+ * BM25, each word's score shrinking with the edits needed to reach it, and
+ * the best are picked with a heap bounded by the result limit. Date, amount
+ * and type restrictions are checked against arrays kept by id before a
+ * transaction is scored.
+ *
+ * Transactions keep the id they were added with; equal scores come back in
+ * the order of the list the index was built from. The index is rebuilt
+ * once deleted transactions outnumber live ones.
+ *
+ * Not thread-safe.
+ */
+public final class RankedSearchIndex {
+    // BM25 term frequency saturation and length normalization
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Most dictionary words a query word is expanded to, most frequent first
+    private static final int MAX_EXPANSIONS = 64;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private final List<Transaction> transactions = new ArrayList<>(); // by id, null once removed
+    private final Map<Transaction, Integer> ids = new IdentityHashMap<>();
+    private final TreeMap<String, Term> dictionary = new TreeMap<>();
+    private final BkTree bkTree = new BkTree();
+    private int removedCount;
+    private long totalLength;   // words in live transactions
+
+    // By id
+    private Term[][] words = new Term[16][];
+    private int[] lengths = new int[16];
+    private int[] days = new int[16];           // epoch day, or NO_DATE
+    private long[] amounts = new long[16];      // cents
+    private TransactionType[] types = new TransactionType[16];
+
+    /**
+     * Create an index of a list of transactions
+     */
+    public RankedSearchIndex(List<Transaction> transactions) {
+        rebuild(transactions);
+    }
+
+    /**
+     * Index another list of transactions, dropping the current ones
+     */
+    public void rebuild(List<Transaction> list) {
+        transactions.clear();
+        ids.clear();
+        dictionary.clear();
+        bkTree.clear();
+        removedCount = 0;
+        totalLength = 0;
+        for (Transaction transaction : list) {
+            add(transaction);
+        }
+    }
+
+    /**
+     * Index a new transaction, after the others
+     */
+    public void add(Transaction transaction) {
+        int id = transactions.size();
+        ensureCapacity(id + 1);
+        transactions.add(transaction);
+        ids.put(transaction, id);
+        index(id, transaction);
+    }
+
+    /**
+     * Replace an indexed transaction with its edited version, keeping its position
+     */
+    public void replace(Transaction previous, Transaction current) {
+        Integer id = ids.remove(previous);
+        if (id == null) {
+            add(current);
+            return;
+        }
+        unindex(id);
+        transactions.set(id, current);
+        ids.put(current, id);
+        index(id, current);
+    }
+
+    /**
+     * Drop a transaction from the index
+     */
+    public void remove(Transaction transaction) {
+        Integer id = ids.remove(transaction);
+        if (id == null) return;
+
+        unindex(id);
+        transactions.set(id, null);
+        words[id] = null;
+        removedCount++;
+        if (removedCount > 1024 && removedCount * 2 > transactions.size()) {
+            List<Transaction> live = new ArrayList<>(ids.size());
+            for (Transaction remaining : transactions) {
+                if (remaining != null) live.add(remaining);
+            }
+            rebuild(live);
+        }
+    }
+
+    /**
+     * Find the transactions best matching some criteria
+     *
+     * @param criteria the words to look for and the restrictions to apply
+     * @return at most the criteria's limit of transactions, best match
+     *         first; with no words, the first transactions within the
+     *         restrictions, in the order they were indexed
+     */
+    public List<Transaction> search(SearchCriteria criteria) {
+        Filter filter = new Filter(criteria);
+        String[] queryWords = tokenize(criteria.getText());
+        if (queryWords.length == 0) {
+            List<Transaction> result = new ArrayList<>();
+            for (int id = 0; id < transactions.size() && result.size() < criteria.getLimit(); id++) {
+                if (transactions.get(id) != null && filter.accepts(id)) {
+                    result.add(transactions.get(id));
+                }
+            }
+            return result;
+        }
+
+        int count = transactions.size();
+        double averageLength = Math.max(1.0, (double) totalLength / Math.max(1, ids.size()));
+        float[] scores = new float[count];
+        float[] best = new float[count];
+        int[] touched = new int[count];
+        int[] matched = new int[count];
+        int matchedCount = 0;
+
+        for (int i = 0; i < queryWords.length; i++) {
+            // Each transaction scores its best expansion of each query word
+            int touchedCount = 0;
+            boolean last = i == queryWords.length - 1;
+            for (Expansion expansion : expand(queryWords[i], last)) {
+                Term term = expansion.term;
+                double idf = Math.log(1 + (ids.size() - term.size + 0.5) / (term.size + 0.5));
+                double weight = idf / (1 + expansion.edits);
+                for (int j = 0; j < term.size; j++) {
+                    int id = term.ids[j];
+                    if (!filter.accepts(id)) continue;
+
+                    int frequency = term.counts[j];
+                    double norm = K1 * (1 - B + B * lengths[id] / averageLength);
+                    float score = (float) (weight * frequency * (K1 + 1) / (frequency + norm));
+                    if (best[id] == 0) touched[touchedCount++] = id;
+                    if (score > best[id]) best[id] = score;
+                }
+            }
+            for (int j = 0; j < touchedCount; j++) {
+                int id = touched[j];
+                if (scores[id] == 0) matched[matchedCount++] = id;
+                scores[id] += best[id];
+                best[id] = 0;
+            }
+        }
+
+        return top(scores, matched, matchedCount, criteria.getLimit());
+    }
+
+    /**
+     * Pick the highest scores with a min-heap of at most limit ids
+     */
+    private List<Transaction> top(float[] scores, int[] matched, int matchedCount, int limit) {
+        int[] heap = new int[Math.min(limit, matchedCount)];
+        int size = 0;
+        for (int i = 0; i < matchedCount; i++) {
+            int id = matched[i];
+            if (size < heap.length) {
+                heap[size] = id;
+                siftUp(heap, size++, scores);
+            } else if (worse(heap[0], id, scores)) {
+                heap[0] = id;
+                siftDown(heap, size, scores);
+            }
+        }
+
+        // Take the worst off the top until the heap is empty
+        Transaction[] result = new Transaction[size];
+        while (size > 0) {
+            result[size - 1] = transactions.get(heap[0]);
+            heap[0] = heap[--size];
+            siftDown(heap, size, scores);
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Whether id a ranks below id b: a lower score, or an equal score and
+     * indexed later
+     */
+    private static boolean worse(int a, int b, float[] scores) {
+        return scores[a] < scores[b] || (scores[a] == scores[b] && a > b);
+    }
+
+    private static void siftUp(int[] heap, int position, float[] scores) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!worse(heap[position], heap[parent], scores)) break;
+            swap(heap, position, parent);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) break;
+            if (child + 1 < size && worse(heap[child + 1], heap[child], scores)) child++;
+            if (!worse(heap[child], heap[position], scores)) break;
+            swap(heap, position, child);
+            position = child;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int id = heap[i];
+        heap[i] = heap[j];
+        heap[j] = id;
+    }
+
+    /**
+     * Find the dictionary words a query word may stand for: those within
+     * the edits allowed for its length and, for the last word, those it
+     * starts. Only the most frequent are kept.
+     */
+    private List<Expansion> expand(String word, boolean prefix) {
+        Map<Term, Integer> edits = new HashMap<>();
+        bkTree.search(word, maxEdits(word), edits);
+        if (prefix) {
+            // A word being typed: count the missing end as one edit
+            for (Term term : dictionary.subMap(word, false, word + Character.MAX_VALUE, false).values()) {
+                edits.merge(term, 1, Math::min);
+            }
+        }
+
+        List<Expansion> expansions = new ArrayList<>(edits.size());
+        for (Map.Entry<Term, Integer> entry : edits.entrySet()) {
+            if (entry.getKey().size > 0) {
+                expansions.add(new Expansion(entry.getKey(), entry.getValue()));
+            }
+        }
+        if (expansions.size() > MAX_EXPANSIONS) {
+            expansions.sort(Comparator.comparingInt((Expansion expansion) -> expansion.edits)
+                .thenComparing(expansion -> -expansion.term.size));
+            expansions = expansions.subList(0, MAX_EXPANSIONS);
+        }
+        return expansions;
+    }
+
+    /**
+     * Edits allowed for a query word: none up to two characters, one up to
+     * five, two beyond
+     */
+    private static int maxEdits(String word) {
+        return word.length() <= 2 ? 0 : word.length() <= 5 ? 1 : 2;
+    }
+
+    private void index(int id, Transaction transaction) {
+        String[] description = tokenize(transaction.getDescription());
+        String[] notes = tokenize(transaction.getNotes());
+        String[] tokens = Arrays.copyOf(description, description.length + notes.length);
+        System.arraycopy(notes, 0, tokens, description.length, notes.length);
+        Arrays.sort(tokens);
+
+        // Each distinct word once, with the times it occurs
+        List<Term> terms = new ArrayList<>();
+        for (int i = 0; i < tokens.length; ) {
+            int j = i + 1;
+            while (j < tokens.length && tokens[j].equals(tokens[i])) j++;
+
+            Term term = dictionary.get(tokens[i]);
+            if (term == null) {
+                term = new Term(tokens[i]);
+                dictionary.put(term.word, term);
+                bkTree.add(term);
+            }
+            term.add(id, j - i);
+            terms.add(term);
+            i = j;
+        }
+
+        words[id] = terms.toArray(new Term[0]);
+        lengths[id] = tokens.length;
+        days[id] = transaction.getDate() == null ? NO_DATE : (int) transaction.getDate().toEpochDay();
+        amounts[id] = transaction.getAmountCents();
+        types[id] = transaction.getType();
+        totalLength += tokens.length;
+    }
+
+    /**
+     * Take a transaction out of the postings of its words. Words left with
+     * no transactions stay in the dictionary until the index is rebuilt.
+     */
+    private void unindex(int id) {
+        for (Term term : words[id]) {
+            term.remove(id);
+        }
+        totalLength -= lengths[id];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= lengths.length) return;
+
+        int length = Math.max(capacity, lengths.length + (lengths.length >> 1));
+        words = Arrays.copyOf(words, length);
+        lengths = Arrays.copyOf(lengths, length);
+        days = Arrays.copyOf(days, length);
+        amounts = Arrays.copyOf(amounts, length);
+        types = Arrays.copyOf(types, length);
+    }
+
+    /**
+     * Split a text into lowercase words of letters and digits
+     */
+    static String[] tokenize(String text) {
+        if (text == null) return new String[0];
+
+        List<String> tokens = new ArrayList<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * Levenshtein distance between two words
+     */
+    static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    /**
+     * The date, amount and type restrictions of a search, checked by id
+     */
+    private final class Filter {
+        private final int startDay;
+        private final int endDay;
+        private final long minAmountCents;
+        private final long maxAmountCents;
+        private final TransactionType type;
+        private final boolean dated;
+
+        Filter(SearchCriteria criteria) {
+            startDay = criteria.getStartDate() == null ? Integer.MIN_VALUE
+                : (int) criteria.getStartDate().toEpochDay();
+            endDay = criteria.getEndDate() == null ? Integer.MAX_VALUE
+                : (int) criteria.getEndDate().toEpochDay();
+            dated = criteria.getStartDate() != null || criteria.getEndDate() != null;
+            minAmountCents = criteria.getMinAmountCents();
+            maxAmountCents = criteria.getMaxAmountCents();
+            type = criteria.getType();
+        }
+
+        boolean accepts(int id) {
+            int day = days[id];
+            long amount = amounts[id];
+            return (!dated || (day != NO_DATE && day >= startDay && day <= endDay))
+                && amount >= minAmountCents && amount <= maxAmountCents
+                && (type == null || types[id] == type);
+        }
+    }
+
+    /**
+     * A dictionary word a query word was expanded to
+     */
+    private static final class Expansion {
+        private final Term term;
+        private final int edits;
+
+        Expansion(Term term, int edits) {
+            this.term = term;
+            this.edits = edits;
+        }
+    }
+
+    /**
+     * A dictionary word with the sorted ids of the transactions containing
+     * it and how many times each does
+     */
+    private static final class Term {
+        private final String word;
+        private int[] ids = new int[2];
+        private int[] counts = new int[2];
+        private int size;
+
+        Term(String word) {
+            this.word = word;
+        }
+
+        void add(int id, int count) {
+            int position = size;
+            if (size > 0 && ids[size - 1] >= id) {
+                // An edited transaction, placed by its id
+                position = -Arrays.binarySearch(ids, 0, size, id) - 1;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+                counts = Arrays.copyOf(counts, ids.length);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            System.arraycopy(counts, position, counts, position + 1, size - position);
+            ids[position] = id;
+            counts[position] = count;
+            size++;
+        }
+
+        void remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) return;
+
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            System.arraycopy(counts, position + 1, counts, position, size - position - 1);
+            size--;
+        }
+    }
+
+    /**
+     * Burkhard-Keller tree of the dictionary words. Every child of a node is
+     * at a different edit distance from it, so by the triangle inequality a
+     * search within n edits of a word at distance d from a node only visits
+     * the children between d - n and d + n.
+     */
+    private static final class BkTree {
+        private Node root;
+
+        void clear() {
+            root = null;
+        }
+
+        void add(Term term) {
+            if (root == null) {
+                root = new Node(term);
+                return;
+            }
+            Node node = root;
+            while (true) {
+                int d = distance(term.word, node.term.word);
+                Node child = node.children.get(d);
+                if (child == null) {
+                    node.children.put(d, new Node(term));
+                    return;
+                }
+                node = child;
+            }
+        }
+
+        /**
+         * Collect the words within a number of edits of a word, with their distance
+         */
+        void search(String word, int maxEdits, Map<Term, Integer> found) {
+            if (root == null) return;
+
+            Deque<Node> pending = new ArrayDeque<>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                Node node = pending.pop();
+                int d = distance(word, node.term.word);
+                if (d <= maxEdits) {
+                    found.put(node.term, d);
+                }
+                for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+                    if (Math.abs(child.getKey() - d) <= maxEdits) {
+                        pending.push(child.getValue());
+                    }
+                }
+            }
+        }
+
+        private static final class Node {
+            private final Term term;
+            private final Map<Integer, Node> children = new HashMap<>(4);
+
+            Node(Term term) {
+                this.term = term;
+            }
+        }
+    }
+}
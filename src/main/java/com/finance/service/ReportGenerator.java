@@ -1,5 +1,6 @@
 package com.finance.service;
 
+import com.finance.data.DataManager;
 import com.finance.model.*;
 import java.time.LocalDate;
 import java.time.YearMonth;
@@ -22,6 +23,8 @@ public class ReportGenerator {
     private final NumberFormat currencyFormatter;
     private final List<Transaction> transactions;
     private final List<Budget> budgets;
+    // Source of transactions and balances, null when reporting on a list
+    private final DataManager dataManager;
     
     /**
      * Constructor for ReportGenerator
@@ -29,10 +32,32 @@ public class ReportGenerator {
     public ReportGenerator(List<Transaction> transactions, List<Budget> budgets, Currency currency, Locale locale) {
         this.transactions = transactions;
         this.budgets = budgets;
+        this.dataManager = null;
         this.currencyFormatter = NumberFormat.getCurrencyInstance(locale);
         this.currencyFormatter.setCurrency(currency);
     }
     
+    /**
+     * Constructor for a ReportGenerator reading from a data manager. Only
+     * the transactions of each report's period are read, and balances come
+     * from the data manager's balance index.
+     */
+    public ReportGenerator(DataManager dataManager, Currency currency, Locale locale) {
+        this.transactions = null;
+        this.budgets = dataManager.getAllBudgets();
+        this.dataManager = dataManager;
+        this.currencyFormatter = NumberFormat.getCurrencyInstance(locale);
+        this.currencyFormatter.setCurrency(currency);
+    }
+    
+    /**
+     * Get the transactions to report on for a period; the list given to
+     * the constructor may contain transactions outside it
+     */
+    private List<Transaction> transactionsIn(LocalDate startDate, LocalDate endDate) {
+        return dataManager != null ? dataManager.getTransactions(startDate, endDate) : transactions;
+    }
+    
     /**
      * Generate monthly summary report
      */
@@ -46,11 +71,13 @@ public class ReportGenerator {
               .append("\n")
               .append("======================================\n\n");
         
-        // Calculate totals
-        double totalIncome = FinancialCalculator.calculateTotalIncome(transactions, startDate, endDate);
-        double totalExpenses = FinancialCalculator.calculateTotalExpenses(transactions, startDate, endDate);
-        double netSavings = FinancialCalculator.calculateNetSavings(transactions, startDate, endDate);
-        double savingsRate = FinancialCalculator.calculateSavingsRate(transactions, startDate, endDate) * 100;
+        // Calculate all figures in one pass
+        PeriodSummary summary = FinancialCalculator.summarize(
+            transactionsIn(startDate, endDate), startDate, endDate);
+        double totalIncome = summary.getTotalIncome();
+        double totalExpenses = summary.getTotalExpenses();
+        double netSavings = summary.getNetSavings();
+        double savingsRate = summary.getSavingsRate() * 100;
         
         // Income and expense summary
         report.append("INCOME & EXPENSE SUMMARY:\n")
@@ -61,8 +88,7 @@ public class ReportGenerator {
         
         // Income breakdown
         report.append("INCOME BREAKDOWN:\n");
-        Map<Category, Double> incomeByCategory = FinancialCalculator.calculateIncomeByCategory(
-            transactions, startDate, endDate);
+        Map<Category, Double> incomeByCategory = summary.getIncomeByCategory();
         
         if (incomeByCategory.isEmpty()) {
             report.append("No income recorded for this period.\n\n");
@@ -82,8 +108,7 @@ public class ReportGenerator {
         
         // Expense breakdown
         report.append("EXPENSE BREAKDOWN:\n");
-        Map<Category, Double> expensesByCategory = FinancialCalculator.calculateExpensesByCategory(
-            transactions, startDate, endDate);
+        Map<Category, Double> expensesByCategory = summary.getExpensesByCategory();
         
         if (expensesByCategory.isEmpty()) {
             report.append("No expenses recorded for this period.\n\n");
@@ -103,8 +128,12 @@ public class ReportGenerator {
         
         // Budget status
         report.append("BUDGET STATUS:\n");
-        Map<Budget, Double> budgetStatus = FinancialCalculator.calculateBudgetStatus(
-            transactions, budgets, month);
+        Map<Budget, Double> budgetStatus = new HashMap<>();
+        for (Budget budget : budgets) {
+            if (budget.getPeriod().equals(month)) {
+                budgetStatus.put(budget, budget.getPlannedAmount() - summary.getExpenses(budget.getCategory()));
+            }
+        }
         
         if (budgetStatus.isEmpty()) {
             report.append("No budgets set for this period.\n\n");
@@ -153,11 +182,15 @@ public class ReportGenerator {
               .append("\n")
               .append("======================================\n\n");
         
-        // Calculate yearly totals
-        double totalIncome = FinancialCalculator.calculateTotalIncome(transactions, startDate, endDate);
-        double totalExpenses = FinancialCalculator.calculateTotalExpenses(transactions, startDate, endDate);
-        double netSavings = FinancialCalculator.calculateNetSavings(transactions, startDate, endDate);
-        double savingsRate = FinancialCalculator.calculateSavingsRate(transactions, startDate, endDate) * 100;
+        // Calculate yearly figures in one pass, and monthly figures in another
+        List<Transaction> yearTransactions = transactionsIn(startDate, endDate);
+        PeriodSummary summary = FinancialCalculator.summarize(yearTransactions, startDate, endDate);
+        Map<YearMonth, PeriodSummary> monthlySummaries = FinancialCalculator.summarizeByMonth(
+            yearTransactions, startDate, endDate);
+        double totalIncome = summary.getTotalIncome();
+        double totalExpenses = summary.getTotalExpenses();
+        double netSavings = summary.getNetSavings();
+        double savingsRate = summary.getSavingsRate() * 100;
         
         report.append("YEARLY SUMMARY:\n")
               .append("Total Income: ").append(currencyFormatter.format(totalIncome)).append("\n")
@@ -168,16 +201,11 @@ public class ReportGenerator {
         // Monthly breakdown
         report.append("MONTHLY BREAKDOWN:\n");
         
-        for (int month = 1; month <= 12; month++) {
-            YearMonth yearMonth = YearMonth.of(year, month);
-            LocalDate monthStart = yearMonth.atDay(1);
-            LocalDate monthEnd = yearMonth.atEndOfMonth();
-            
-            double monthlyIncome = FinancialCalculator.calculateTotalIncome(
-                transactions, monthStart, monthEnd);
-            double monthlyExpenses = FinancialCalculator.calculateTotalExpenses(
-                transactions, monthStart, monthEnd);
-            double monthlySavings = monthlyIncome - monthlyExpenses;
+        for (Map.Entry<YearMonth, PeriodSummary> entry : monthlySummaries.entrySet()) {
+            YearMonth yearMonth = entry.getKey();
+            double monthlyIncome = entry.getValue().getTotalIncome();
+            double monthlyExpenses = entry.getValue().getTotalExpenses();
+            double monthlySavings = entry.getValue().getNetSavings();
             
             report.append(yearMonth.format(DateTimeFormatter.ofPattern("MMMM")))
                   .append(": Income = ").append(currencyFormatter.format(monthlyIncome))
@@ -190,8 +218,7 @@ public class ReportGenerator {
         
         // Top spending categories
         report.append("TOP SPENDING CATEGORIES:\n");
-        Map<Category, Double> yearlyExpensesByCategory = FinancialCalculator.calculateExpensesByCategory(
-            transactions, startDate, endDate);
+        Map<Category, Double> yearlyExpensesByCategory = summary.getExpensesByCategory();
         
         if (yearlyExpensesByCategory.isEmpty()) {
             report.append("No expenses recorded for this year.\n\n");
@@ -228,7 +255,7 @@ public class ReportGenerator {
         
         // Get transactions for the period, sorted by date
         List<Transaction> periodTransactions = new ArrayList<>();
-        for (Transaction t : transactions) {
+        for (Transaction t : transactionsIn(startDate, endDate)) {
             if (!t.getDate().isBefore(startDate) && !t.getDate().isAfter(endDate)) {
                 periodTransactions.add(t);
             }
@@ -273,6 +300,10 @@ public class ReportGenerator {
      * Calculate balance before a specific date
      */
     private double calculateBalanceBeforeDate(LocalDate date) {
+        if (dataManager != null) {
+            return dataManager.getBalanceBefore(date);
+        }
+        
         double balance = 0;
         
         for (Transaction transaction : transactions) {
@@ -0,0 +1,99 @@
+package com.finance.service;
+
+import com.finance.model.Money;
+import com.finance.model.TransactionType;
+
+import java.time.LocalDate;
+
+/**
+ * What a ranked search looks for: words, which may be misspelt, and
+ * optional date, amount and type restrictions, which the index checks
+ * before scoring a transaction
+ */
+public class SearchCriteria {
+    private static final int DEFAULT_LIMIT = 100;
+
+    private final String text;
+    private LocalDate startDate;            // inclusive, null for no bound
+    private LocalDate endDate;              // inclusive, null for no bound
+    private long minAmountCents = Long.MIN_VALUE;
+    private long maxAmountCents = Long.MAX_VALUE;
+    private TransactionType type;           // null for both
+    private int limit = DEFAULT_LIMIT;
+
+    /**
+     * Constructor
+     *
+     * @param text the words to look for in descriptions and notes; with no
+     *             words every transaction within the restrictions matches
+     */
+    public SearchCriteria(String text) {
+        this.text = text == null ? "" : text;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    /**
+     * Only match transactions dated within a range
+     *
+     * @param startDate the first day, or null for no lower bound
+     * @param endDate the last day, or null for no upper bound
+     */
+    public void setDateRange(LocalDate startDate, LocalDate endDate) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    public long getMinAmountCents() {
+        return minAmountCents;
+    }
+
+    public long getMaxAmountCents() {
+        return maxAmountCents;
+    }
+
+    /**
+     * Only match transactions whose amount is within a range, inclusive
+     */
+    public void setAmountRange(double minAmount, double maxAmount) {
+        this.minAmountCents = Money.toCents(minAmount);
+        this.maxAmountCents = Money.toCents(maxAmount);
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    /**
+     * Only match transactions of a type, or of both if null
+     */
+    public void setType(TransactionType type) {
+        this.type = type;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Set the maximum number of results
+     *
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public void setLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be greater than 0: " + limit);
+        }
+        this.limit = limit;
+    }
+}
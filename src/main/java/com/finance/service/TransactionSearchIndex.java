@@ -0,0 +1,276 @@
+package com.finance.service;
+
+import com.finance.model.Transaction;
+
+import java.util.*;
+
+/**
+ * Substring search over the description, notes and category name of a list
+ * of transactions, through an inverted index of trigrams. The fields of
+ * each transaction are kept lowercased in one string, and every run of
+ * three characters in it maps to the sorted ids of the transactions
+ * containing it. A query of three or more characters is answered by
+ * intersecting the lists of its trigrams, starting with the shortest, and
+ * checking the candidates left against their strings; shorter queries
+ * check every string.
+ *
+ * Transactions keep the id they were added with, so results come back in
+ * the order of the list the index was built from. An edited transaction
+ * keeps its id: the trigrams of its new text are added, and those of its
+ * old text stay behind until the index is rebuilt, as candidates that fail
+ * the final check. The index is rebuilt once deleted transactions
+ * outnumber live ones.
+ *
+ * When a query extends the previous one, for example as the user types
+ * another character, only the previous results are checked again.
+ *
+ * Not thread-safe.
+ */
+public final class TransactionSearchIndex {
+    private static final int GRAM = 3;
+    private static final char SEPARATOR = '\0';
+
+    private final List<Transaction> transactions = new ArrayList<>(); // by id, null once removed
+    private final List<String> texts = new ArrayList<>();             // searchable text by id
+    private final Map<Transaction, Integer> ids = new IdentityHashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private int removedCount;
+
+    // Last query and its result, for refining
+    private String lastQuery;
+    private int[] lastResult;
+
+    /**
+     * Create an index of a list of transactions
+     */
+    public TransactionSearchIndex(List<Transaction> transactions) {
+        rebuild(transactions);
+    }
+
+    /**
+     * Index another list of transactions, dropping the current ones
+     */
+    public void rebuild(List<Transaction> list) {
+        transactions.clear();
+        texts.clear();
+        ids.clear();
+        postings.clear();
+        removedCount = 0;
+        lastQuery = null;
+        for (Transaction transaction : list) {
+            add(transaction);
+        }
+    }
+
+    /**
+     * Index a new transaction, after the others
+     */
+    public void add(Transaction transaction) {
+        int id = transactions.size();
+        transactions.add(transaction);
+        texts.add(text(transaction));
+        ids.put(transaction, id);
+        index(id);
+        lastQuery = null;
+    }
+
+    /**
+     * Replace an indexed transaction with its edited version, keeping its position
+     */
+    public void replace(Transaction previous, Transaction current) {
+        Integer id = ids.remove(previous);
+        if (id == null) {
+            add(current);
+            return;
+        }
+        transactions.set(id, current);
+        texts.set(id, text(current));
+        ids.put(current, id);
+        index(id);
+        lastQuery = null;
+    }
+
+    /**
+     * Drop a transaction from the index
+     */
+    public void remove(Transaction transaction) {
+        Integer id = ids.remove(transaction);
+        if (id == null) return;
+
+        transactions.set(id, null);
+        texts.set(id, null);
+        removedCount++;
+        lastQuery = null;
+        if (removedCount > 1024 && removedCount * 2 > transactions.size()) {
+            List<Transaction> live = new ArrayList<>(ids.size());
+            for (Transaction remaining : transactions) {
+                if (remaining != null) live.add(remaining);
+            }
+            rebuild(live);
+        }
+    }
+
+    /**
+     * Find the transactions whose description, notes or category name
+     * contain a text, ignoring case
+     *
+     * @param query the text to look for
+     * @return the matching transactions, in the order they were indexed
+     */
+    public List<Transaction> search(String query) {
+        String text = lowercase(query);
+        int[] result;
+        if (lastQuery != null && text.contains(lastQuery)) {
+            result = check(lastResult, lastResult.length, text);
+        } else if (text.length() < GRAM) {
+            result = scan(text);
+        } else {
+            result = lookup(text);
+        }
+        lastQuery = text;
+        lastResult = result;
+
+        List<Transaction> matches = new ArrayList<>(result.length);
+        for (int id : result) {
+            matches.add(transactions.get(id));
+        }
+        return matches;
+    }
+
+    /**
+     * Intersect the postings of the query's trigrams and check the candidates
+     */
+    private int[] lookup(String text) {
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            Postings list = postings.get(gram(text, i));
+            if (list == null) return new int[0];
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        int[] candidates = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+        int count = candidates.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            count = intersect(candidates, count, lists.get(i));
+        }
+        return check(candidates, count, text);
+    }
+
+    /**
+     * Check every live transaction, for queries too short to have a trigram
+     */
+    private int[] scan(String text) {
+        int[] all = new int[transactions.size()];
+        int count = 0;
+        for (int id = 0; id < all.length; id++) {
+            if (transactions.get(id) != null) all[count++] = id;
+        }
+        return check(all, count, text);
+    }
+
+    /**
+     * Keep the candidates that are live and really contain the text
+     */
+    private int[] check(int[] candidates, int count, String text) {
+        int[] result = new int[count];
+        int matches = 0;
+        for (int i = 0; i < count; i++) {
+            String candidate = texts.get(candidates[i]);
+            if (candidate != null && candidate.contains(text)) {
+                result[matches++] = candidates[i];
+            }
+        }
+        return matches == count ? result : Arrays.copyOf(result, matches);
+    }
+
+    /**
+     * Keep the ids in the first count entries of candidates that are also
+     * in a postings list, in place
+     *
+     * @return the number of ids kept
+     */
+    private static int intersect(int[] candidates, int count, Postings list) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < list.size; i++) {
+            int id = candidates[i];
+            // Gallop: the list is usually much longer than the candidates
+            int step = 1;
+            while (j + step < list.size && list.ids[j + step] < id) {
+                j += step;
+                step <<= 1;
+            }
+            while (j < list.size && list.ids[j] < id) j++;
+            if (j < list.size && list.ids[j] == id) {
+                candidates[kept++] = id;
+            }
+        }
+        return kept;
+    }
+
+    private void index(int id) {
+        String text = texts.get(id);
+        long[] grams = new long[Math.max(0, text.length() - GRAM + 1)];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = gram(text, i);
+        }
+
+        // Each distinct trigram once
+        Arrays.sort(grams);
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                postings.computeIfAbsent(grams[i], key -> new Postings()).add(id);
+            }
+        }
+    }
+
+    /**
+     * Join the searchable fields, lowercased. The separator cannot be
+     * typed, so no query matches across two fields.
+     */
+    private static String text(Transaction transaction) {
+        return lowercase(transaction.getDescription()) + SEPARATOR
+            + lowercase(transaction.getNotes()) + SEPARATOR
+            + lowercase(transaction.getCategory() == null ? null : transaction.getCategory().getName());
+    }
+
+    private static String lowercase(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Pack three characters into a key
+     */
+    private static long gram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    /**
+     * Sorted, growable list of transaction ids
+     */
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                // An edited transaction, placed by its id
+                int position = Arrays.binarySearch(ids, 0, size, id);
+                if (position >= 0) return;
+                insert(-position - 1, id);
+                return;
+            }
+            insert(size, id);
+        }
+
+        private void insert(int position, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+    }
+}
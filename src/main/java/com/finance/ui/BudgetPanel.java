@@ -2,7 +2,6 @@ package com.finance.ui;
 
 import com.finance.data.DataManager;
 import com.finance.model.Category;
-import com.finance.model.Transaction;
 import com.finance.model.TransactionType;
 
 import javax.swing.*;
@@ -14,19 +13,16 @@ import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Map;
-import java.util.HashMap;
 
 /**
  * Panel for managing budgets
  */
 import com.finance.model.Budget;
 
-public class BudgetPanel extends JPanel {
+public class BudgetPanel extends JPanel implements DataChangeListener {
     private final DataManager dataManager;
     private List<Budget> budgets;
     private List<Category> categories;
-    private List<Transaction> transactions;
     
     // UI Components
     private JTable budgetTable;
@@ -37,6 +33,9 @@ public class BudgetPanel extends JPanel {
     private JComboBox<String> monthCombo;
     private JComboBox<String> yearCombo;
     
+    // Change notification
+    private transient DataChangeBus dataChangeBus;
+    
     /**
      * Constructor
      */
@@ -44,7 +43,6 @@ public class BudgetPanel extends JPanel {
         this.dataManager = dataManager;
         this.budgets = new ArrayList<>();
         this.categories = new ArrayList<>();
-        this.transactions = new ArrayList<>();
         
         setupUI();
     }
@@ -168,11 +166,29 @@ public class BudgetPanel extends JPanel {
     }
     
     /**
-     * Set transactions data
+     * Set the bus to publish budget changes on
      */
-    public void setTransactions(List<Transaction> transactions) {
-        this.transactions = transactions;
-        refreshTable();
+    public void setDataChangeBus(DataChangeBus bus) {
+        this.dataChangeBus = bus;
+    }
+    
+    /**
+     * Refresh the table when transactions of the month shown changed;
+     * the budgets' spent amounts are already up to date
+     */
+    @Override
+    public void onDataChanged(DataChangeEvent event) {
+        YearMonth shown = YearMonth.of(Integer.parseInt((String)yearCombo.getSelectedItem()),
+            monthCombo.getSelectedIndex() + 1);
+        if (event.hasTransactionChanges() && event.getMonths().contains(shown)) {
+            refreshTable();
+        }
+    }
+    
+    private void publish(DataChangeEvent event) {
+        if (dataChangeBus != null) {
+            dataChangeBus.publish(event);
+        }
     }
     
     /**
@@ -186,30 +202,6 @@ public class BudgetPanel extends JPanel {
         int monthIndex = monthCombo.getSelectedIndex();
         int year = Integer.parseInt((String)yearCombo.getSelectedItem());
         
-        // Calculate spending for the month
-        YearMonth yearMonth = YearMonth.of(year, monthIndex + 1);
-        LocalDate startDate = yearMonth.atDay(1);
-        LocalDate endDate = yearMonth.atEndOfMonth();
-        
-        Map<String, Double> categorySpending = new HashMap<>();
-        
-        // Calculate spending for each category
-        for (Transaction transaction : transactions) {
-            if (transaction.getType() == TransactionType.EXPENSE && 
-                !transaction.getDate().isBefore(startDate) && 
-                !transaction.getDate().isAfter(endDate)) {
-                
-                String categoryId = String.valueOf(transaction.getCategory().getId());
-                double amount = transaction.getAmount();
-                
-                if (categorySpending.containsKey(categoryId)) {
-                    categorySpending.put(categoryId, categorySpending.get(categoryId) + amount);
-                } else {
-                    categorySpending.put(categoryId, amount);
-                }
-            }
-        }
-        
         // Add rows for each budget
         double totalBudgetAmount = 0;
         double totalSpentAmount = 0;
@@ -221,7 +213,7 @@ public class BudgetPanel extends JPanel {
                 
                 Category category = budget.getCategory();
                 double budgetAmount = budget.getAmount();
-                double spent = categorySpending.getOrDefault(category.getId(), 0.0);
+                double spent = budget.getSpent(); // kept current by the data manager
                 double remaining = budgetAmount - spent;
                 int progressValue = (int)Math.min(100, (spent / budgetAmount) * 100);
                 
@@ -294,6 +286,7 @@ public class BudgetPanel extends JPanel {
             budgets.add(newBudget);
             dataManager.saveBudget(newBudget);
             refreshTable();
+            publish(DataChangeEvent.budgetChanged(newBudget));
         }
     }
     
@@ -352,6 +345,7 @@ public class BudgetPanel extends JPanel {
             
             dataManager.updateBudget(updatedBudget);
             refreshTable();
+            publish(DataChangeEvent.budgetChanged(updatedBudget));
         }
     }
     
@@ -391,6 +385,7 @@ public class BudgetPanel extends JPanel {
             budgets.remove(selectedBudget);
             dataManager.deleteBudget(selectedBudget);
             refreshTable();
+            publish(DataChangeEvent.budgetChanged(selectedBudget));
         }
     }
     
@@ -0,0 +1,104 @@
+package com.finance.ui;
+
+import com.finance.data.AggregateCell;
+import com.finance.data.DataManager;
+import com.finance.model.Budget;
+import com.finance.model.Category;
+import com.finance.model.Transaction;
+import com.finance.model.TransactionType;
+import com.finance.service.FinancialCalculator;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Everything the dashboard shows, computed in one go off the Event Dispatch
+ * Thread so the EDT only has to put the figures on screen
+ */
+final class DashboardSnapshot {
+    // Number of transactions in the recent transactions table
+    private static final int RECENT_COUNT = 5;
+    // Number of months in the income vs expenses trend
+    private static final int TREND_MONTHS = 6;
+
+    final double monthlyIncome;
+    final double monthlyExpenses;
+    final double totalBalance;
+    final List<Transaction> recentTransactions;
+    final Map<Category, Double> incomeByCategory;
+    final Map<Category, Double> expensesByCategory;
+    final List<Budget> budgets;
+    final Map<YearMonth, Double> trendIncome;   // last months, oldest first
+    final Map<YearMonth, Double> trendExpenses;
+
+    private DashboardSnapshot(double monthlyIncome, double monthlyExpenses, double totalBalance,
+                              List<Transaction> recentTransactions,
+                              Map<Category, Double> incomeByCategory, Map<Category, Double> expensesByCategory,
+                              List<Budget> budgets,
+                              Map<YearMonth, Double> trendIncome, Map<YearMonth, Double> trendExpenses) {
+        this.monthlyIncome = monthlyIncome;
+        this.monthlyExpenses = monthlyExpenses;
+        this.totalBalance = totalBalance;
+        this.recentTransactions = recentTransactions;
+        this.incomeByCategory = incomeByCategory;
+        this.expensesByCategory = expensesByCategory;
+        this.budgets = budgets;
+        this.trendIncome = trendIncome;
+        this.trendExpenses = trendExpenses;
+    }
+
+    /**
+     * Compute the dashboard figures for the current month
+     *
+     * @param dataManager the data to compute from
+     * @param budgets all budgets
+     * @param cancelled checked between steps
+     * @throws CancellationException if cancelled returns true
+     */
+    static DashboardSnapshot compute(DataManager dataManager, List<Budget> budgets,
+                                     BooleanSupplier cancelled) {
+        YearMonth currentMonth = YearMonth.from(LocalDate.now());
+        LocalDate startOfMonth = currentMonth.atDay(1);
+        LocalDate endOfMonth = currentMonth.atEndOfMonth();
+
+        double monthlyIncome = FinancialCalculator.calculateTotalIncome(dataManager, startOfMonth, endOfMonth);
+        double monthlyExpenses = FinancialCalculator.calculateTotalExpenses(dataManager, startOfMonth, endOfMonth);
+        double totalBalance = dataManager.getTotalBalance();
+        checkCancelled(cancelled);
+
+        List<Transaction> recent = dataManager.getRecentTransactions(RECENT_COUNT);
+        checkCancelled(cancelled);
+
+        Map<Category, Double> incomeByCategory =
+            FinancialCalculator.calculateIncomeByCategory(dataManager, startOfMonth, endOfMonth);
+        Map<Category, Double> expensesByCategory =
+            FinancialCalculator.calculateExpensesByCategory(dataManager, startOfMonth, endOfMonth);
+        checkCancelled(cancelled);
+
+        // Add up the monthly aggregates of the last months
+        Map<YearMonth, Double> trendIncome = new TreeMap<>();
+        Map<YearMonth, Double> trendExpenses = new TreeMap<>();
+        for (int i = TREND_MONTHS - 1; i >= 0; i--) {
+            YearMonth month = currentMonth.minusMonths(i);
+            trendIncome.put(month, 0.0);
+            trendExpenses.put(month, 0.0);
+        }
+        for (AggregateCell cell : dataManager.getAggregates(
+                currentMonth.minusMonths(TREND_MONTHS - 1).atDay(1), endOfMonth)) {
+            Map<YearMonth, Double> trend = cell.getType() == TransactionType.INCOME ? trendIncome : trendExpenses;
+            trend.merge(cell.getMonth(), cell.getSum(), Double::sum);
+        }
+
+        return new DashboardSnapshot(monthlyIncome, monthlyExpenses, totalBalance, recent,
+            incomeByCategory, expensesByCategory, budgets, trendIncome, trendExpenses);
+    }
+
+    private static void checkCancelled(BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.finance.ui;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers data change events to the components showing the data. Events
+ * published while the Event Dispatch Thread handles one UI event are merged
+ * and delivered together once it is done, so an action that changes
+ * several things causes one update per subscriber instead of several.
+ *
+ * Events may be published from any thread; subscribers are always called
+ * on the Event Dispatch Thread.
+ */
+public class DataChangeBus {
+    private final List<DataChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private DataChangeEvent pending; // guarded by this
+
+    public void subscribe(DataChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(DataChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Publish a change, to be delivered with the others published before
+     * the Event Dispatch Thread gets to it
+     */
+    public void publish(DataChangeEvent event) {
+        synchronized (this) {
+            if (pending != null) {
+                pending = pending.merge(event);
+                return;
+            }
+            pending = event;
+        }
+        SwingUtilities.invokeLater(this::deliver);
+    }
+
+    private void deliver() {
+        DataChangeEvent event;
+        synchronized (this) {
+            event = pending;
+            pending = null;
+        }
+        for (DataChangeListener listener : listeners) {
+            listener.onDataChanged(event);
+        }
+    }
+}
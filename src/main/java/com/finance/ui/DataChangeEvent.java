@@ -0,0 +1,125 @@
+package com.finance.ui;
+
+import com.finance.model.Budget;
+import com.finance.model.Transaction;
+
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Describes what changed: the kinds of change, the ids of the changed
+ * transactions and budgets, and the months affected. Events
+ * published together are merged into one by {@link DataChangeBus}.
+ */
+public final class DataChangeEvent {
+    /**
+     * Kinds of change
+     */
+    public enum Type {
+        TRANSACTION_ADDED, TRANSACTION_UPDATED, TRANSACTION_DELETED,
+        BUDGET_CHANGED, BULK_IMPORT
+    }
+
+    private final Map<Type, Set<String>> ids = new EnumMap<>(Type.class);
+    private final Set<YearMonth> months = new TreeSet<>();
+
+    private DataChangeEvent() {}
+
+    /**
+     * A transaction was added
+     */
+    public static DataChangeEvent transactionAdded(Transaction transaction) {
+        return new DataChangeEvent().with(Type.TRANSACTION_ADDED, transaction.getId())
+            .month(transaction);
+    }
+
+    /**
+     * A transaction was changed, possibly moving it to another month
+     */
+    public static DataChangeEvent transactionUpdated(Transaction previous, Transaction current) {
+        return new DataChangeEvent().with(Type.TRANSACTION_UPDATED, current.getId())
+            .month(previous).month(current);
+    }
+
+    /**
+     * A transaction was deleted
+     */
+    public static DataChangeEvent transactionDeleted(Transaction transaction) {
+        return new DataChangeEvent().with(Type.TRANSACTION_DELETED, transaction.getId())
+            .month(transaction);
+    }
+
+    /**
+     * A budget was added, changed or deleted
+     */
+    public static DataChangeEvent budgetChanged(Budget budget) {
+        DataChangeEvent event = new DataChangeEvent().with(Type.BUDGET_CHANGED, budget.getId());
+        if (budget.getPeriod() != null) {
+            event.months.add(budget.getPeriod());
+        }
+        return event;
+    }
+
+    /**
+     * All data was replaced, for example by an import
+     */
+    public static DataChangeEvent bulkImport() {
+        return new DataChangeEvent().with(Type.BULK_IMPORT, null);
+    }
+
+    /**
+     * Check whether the event includes a kind of change
+     */
+    public boolean has(Type type) {
+        return ids.containsKey(type);
+    }
+
+    /**
+     * Check whether any transaction was added, changed or deleted
+     */
+    public boolean hasTransactionChanges() {
+        return has(Type.TRANSACTION_ADDED) || has(Type.TRANSACTION_UPDATED) || has(Type.TRANSACTION_DELETED);
+    }
+
+    /**
+     * Get the months of the changed transactions and budgets, in order.
+     * After a bulk import any month may have changed.
+     */
+    public Set<YearMonth> getMonths() {
+        return Collections.unmodifiableSet(months);
+    }
+
+    /**
+     * Combine two events into one holding the changes of both
+     */
+    DataChangeEvent merge(DataChangeEvent other) {
+        DataChangeEvent merged = new DataChangeEvent();
+        for (DataChangeEvent event : new DataChangeEvent[] {this, other}) {
+            for (Map.Entry<Type, Set<String>> entry : event.ids.entrySet()) {
+                merged.ids.computeIfAbsent(entry.getKey(), type -> new LinkedHashSet<>()).addAll(entry.getValue());
+            }
+            merged.months.addAll(event.months);
+        }
+        return merged;
+    }
+
+    private DataChangeEvent with(Type type, String id) {
+        Set<String> typeIds = ids.computeIfAbsent(type, key -> new LinkedHashSet<>());
+        if (id != null) {
+            typeIds.add(id);
+        }
+        return this;
+    }
+
+    private DataChangeEvent month(Transaction transaction) {
+        if (transaction != null && transaction.getDate() != null) {
+            months.add(YearMonth.from(transaction.getDate()));
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "DataChangeEvent" + ids + " months " + months;
+    }
+}
@@ -5,7 +5,10 @@ package com.finance.ui;
  */
 public interface DataChangeListener {
     /**
-     * Called when data has changed and components need to refresh
+     * Called when data has changed and components need to refresh.
+     * Called on the Event Dispatch Thread.
+     *
+     * @param event what changed, possibly merged from several changes
      */
-    void onDataChanged();
+    void onDataChanged(DataChangeEvent event);
 }
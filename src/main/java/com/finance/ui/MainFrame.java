@@ -3,7 +3,8 @@ package com.finance.ui;
 import com.finance.data.DataManager;
 import com.finance.data.FileDataManager;
 import com.finance.model.*;
-import com.finance.service.FinancialCalculator;
+import com.finance.service.BudgetAlert;
+import com.finance.service.BudgetAlertEngine;
 import com.finance.service.ReportGenerator;
 
 import  java.time.format.DateTimeFormatter;
@@ -34,6 +35,7 @@ import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Main application window
@@ -43,12 +45,28 @@ public class MainFrame extends JFrame implements DataChangeListener {
     // Data manager (composition)
     private final DataManager dataManager;
     
+    // Raises alerts as expenses take budgets past their thresholds
+    private final transient BudgetAlertEngine budgetAlerts;
+    
+    // Changes made in the panels, delivered to the components showing them
+    private final transient DataChangeBus dataChangeBus = new DataChangeBus();
+    
+    // Background computation of the dashboard, null when none is running
+    private transient SwingWorker<DashboardSnapshot, Void> refreshWorker;
+    private boolean refreshReloadsPanels; // whether refreshWorker gives the panels fresh data
+    
     // UI Panels
     private JPanel dashboardPanel;
     private TransactionPanel transactionPanel;
     private BudgetPanel budgetPanel;
     private ReportPanel reportPanel;
     private JTabbedPane tabbedPane;
+    private JLabel saveStatusLabel;
+    
+    // Budget alerts, shown in one non-modal notice that collects them until closed
+    private JDialog budgetAlertDialog;
+    private JOptionPane budgetAlertPane;
+    private JTextArea budgetAlertText;
     
     // Menu items
     private JMenuItem exportMenuItem;
@@ -66,6 +84,7 @@ public class MainFrame extends JFrame implements DataChangeListener {
         // Initialize data manager
         dataManager = FileDataManager.getInstance();
         preferences = dataManager.loadUserPreferences();
+        budgetAlerts = new BudgetAlertEngine(dataManager);
         
         setupUI();
         loadData();
@@ -91,17 +110,42 @@ public class MainFrame extends JFrame implements DataChangeListener {
         // Create and add panels
         dashboardPanel = createDashboardPanel();
         transactionPanel = new TransactionPanel(dataManager);
-        transactionPanel.setDataChangeListener(this); // Register as listener
         budgetPanel = new BudgetPanel(dataManager);
         reportPanel = new ReportPanel(dataManager);
         
+        // Panels publish their changes; the dashboard and budgets subscribe
+        transactionPanel.setDataChangeBus(dataChangeBus);
+        budgetPanel.setDataChangeBus(dataChangeBus);
+        dataChangeBus.subscribe(this);
+        dataChangeBus.subscribe(budgetPanel);
+        
         tabbedPane.addTab("Dashboard", new ImageIcon(), dashboardPanel, "Overview of your finances");
         tabbedPane.addTab("Transactions", new ImageIcon(), transactionPanel, "Manage your transactions");
         tabbedPane.addTab("Budgets", new ImageIcon(), budgetPanel, "Manage your budgets");
         tabbedPane.addTab("Reports", new ImageIcon(), reportPanel, "View financial reports");
         
+        // Status bar showing whether changes are still being written
+        saveStatusLabel = new JLabel("All changes saved");
+        saveStatusLabel.setBorder(new EmptyBorder(2, 10, 2, 10));
+        dataManager.addPersistenceListener(pending -> SwingUtilities.invokeLater(() ->
+            saveStatusLabel.setText(pending ? "Saving changes..." : "All changes saved")));
+        
+        // Tell the user when a budget reaches a threshold
+        budgetAlerts.addBudgetAlertListener(alerts -> SwingUtilities.invokeLater(() ->
+            showBudgetAlerts(alerts)));
+        budgetAlerts.start();
+        
+        // Write pending changes before the window closes
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                dataManager.close();
+            }
+        });
+        
         // Add components to main frame
         add(tabbedPane, BorderLayout.CENTER);
+        add(saveStatusLabel, BorderLayout.SOUTH);
         
         // Set look and feel based on preferences
         updateLookAndFeel();
@@ -143,7 +187,10 @@ public class MainFrame extends JFrame implements DataChangeListener {
         setJMenuBar(menuBar);
         
         // Add action listeners
-        exitMenuItem.addActionListener(e -> System.exit(0));
+        exitMenuItem.addActionListener(e -> {
+            dataManager.close();
+            System.exit(0);
+        });
         
         exportMenuItem.addActionListener(e -> {
             JFileChooser fileChooser = new JFileChooser();
@@ -180,7 +227,7 @@ public class MainFrame extends JFrame implements DataChangeListener {
                         "Data imported successfully", 
                         "Import Complete", 
                         JOptionPane.INFORMATION_MESSAGE);
-                    loadData(); // Reload data after import
+                    dataChangeBus.publish(DataChangeEvent.bulkImport()); // Reload data after import
                 } else {
                     JOptionPane.showMessageDialog(this,
                         "Failed to import data",
@@ -325,31 +372,81 @@ public class MainFrame extends JFrame implements DataChangeListener {
      * Load data from data manager and update UI
      */
     private void loadData() {
-        // Load data from data manager
-        List<Transaction> transactions = dataManager.loadTransactions();
-        List<Budget> budgets = dataManager.loadBudgets();
-        List<Category> categories = dataManager.loadCategories();
-        
-        // Update UI panels with loaded data
-        transactionPanel.setTransactions(transactions);
-        transactionPanel.setCategories(categories);
-        
-        budgetPanel.setBudgets(budgets);
-        budgetPanel.setCategories(categories);
-        
-        if (reportPanel != null) {
-            reportPanel.setTransactions(transactions);
-            reportPanel.setCategories(categories);
+        refresh(true);
+    }
+    
+    /**
+     * Read the data and compute the dashboard on a background thread, then
+     * show the results. A refresh started while another is running cancels
+     * it and takes over reloading the panels if the cancelled one was going
+     * to; only the latest one updates the UI. The dashboard only reads the
+     * months it shows; every transaction is only loaded for the panels.
+     * 
+     * @param reloadPanels whether to also give the panels fresh data
+     */
+    private void refresh(boolean reloadPanels) {
+        boolean reload = reloadPanels || (refreshWorker != null && refreshReloadsPanels);
+        if (refreshWorker != null) {
+            // Not interrupted: that would close the data manager's file channels
+            refreshWorker.cancel(false);
         }
         
-        // Update dashboard
-        updateDashboard(transactions, budgets);
+        SwingWorker<DashboardSnapshot, Void> worker = new SwingWorker<DashboardSnapshot, Void>() {
+            private List<Transaction> transactions;
+            private List<Budget> budgets;
+            private List<Category> categories;
+            
+            @Override
+            protected DashboardSnapshot doInBackground() {
+                budgets = dataManager.loadBudgets();
+                if (reload) {
+                    transactions = dataManager.loadTransactions();
+                    categories = dataManager.loadCategories();
+                }
+                return DashboardSnapshot.compute(dataManager, budgets, this::isCancelled);
+            }
+            
+            @Override
+            protected void done() {
+                if (isCancelled() || refreshWorker != this) return;
+                refreshWorker = null;
+                
+                DashboardSnapshot snapshot;
+                try {
+                    snapshot = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    System.err.println("Error refreshing dashboard: " + e.getCause());
+                    return;
+                }
+                
+                if (reload) {
+                    // Update UI panels with loaded data
+                    // Categories first: a rename rebuilds the search index
+                    transactionPanel.setCategories(categories);
+                    transactionPanel.setTransactions(transactions);
+                    
+                    budgetPanel.setBudgets(budgets);
+                    budgetPanel.setCategories(categories);
+                    
+                    if (reportPanel != null) {
+                        reportPanel.setTransactions(transactions);
+                        reportPanel.setCategories(categories);
+                    }
+                }
+                
+                // Update dashboard
+                updateDashboard(snapshot);
+            }
+        };
+        refreshWorker = worker;
+        refreshReloadsPanels = reload;
+        worker.execute();
     }
     
     /**
-     * Update dashboard with current data
+     * Update dashboard with figures computed in the background
      */
-    private void updateDashboard(List<Transaction> transactions, List<Budget> budgets) {
+    private void updateDashboard(DashboardSnapshot snapshot) {
         // Get panel components
         Component[] summaryComponents = ((JPanel)dashboardPanel.getComponent(0)).getComponents();
         JPanel monthSummaryCard = (JPanel)summaryComponents[0];
@@ -376,27 +473,12 @@ public class MainFrame extends JFrame implements DataChangeListener {
         
         currencyFormat.setCurrency(currencyToUse);
         
-        // Calculate current month figures
-        LocalDate today = LocalDate.now();
-        YearMonth currentMonth = YearMonth.from(today);
-        LocalDate startOfMonth = currentMonth.atDay(1);
-        LocalDate endOfMonth = currentMonth.atEndOfMonth();
-        
-        double monthlyIncome = FinancialCalculator.calculateTotalIncome(
-            transactions, startOfMonth, endOfMonth);
-        double monthlyExpenses = FinancialCalculator.calculateTotalExpenses(
-            transactions, startOfMonth, endOfMonth);
-        double monthlySavings = monthlyIncome - monthlyExpenses;
-        
-        // Calculate total balance
-        double totalBalance = 0;
-        for (Transaction t : transactions) {
-            if (t.getType() == TransactionType.INCOME) {
-                totalBalance += t.getAmount();
-            } else {
-                totalBalance -= t.getAmount();
-            }
-        }
+        // Current month figures
+        double monthlyIncome = snapshot.monthlyIncome;
+        double monthlySavings = monthlyIncome - snapshot.monthlyExpenses;
+        
+        // Total balance from the data manager's balance index
+        double totalBalance = snapshot.totalBalance;
         
         // Calculate savings rate
         double savingsRate = 0;
@@ -417,19 +499,20 @@ public class MainFrame extends JFrame implements DataChangeListener {
         savingsValueLabel.setText(String.format("%.1f%%", savingsRate));
         
         // Update recent transactions
-        updateRecentTransactions(transactions);
+        updateRecentTransactions(snapshot.recentTransactions);
         
         // Update charts with real data
-        updateIncomeByCategory(transactions);
-        updateExpensesByCategory(transactions);
-        updateBudgetStatus(budgets, transactions);
-        updateIncomeExpenseTrend(transactions);
+        updateIncomeByCategory(snapshot.incomeByCategory);
+        updateExpensesByCategory(snapshot.expensesByCategory);
+        updateBudgetStatus(snapshot.budgets);
+        updateIncomeExpenseTrend(snapshot.trendIncome, snapshot.trendExpenses);
     }
     
     /**
      * Update Income vs Expenses Trend chart
      */
-    private void updateIncomeExpenseTrend(List<Transaction> transactions) {
+    private void updateIncomeExpenseTrend(Map<YearMonth, Double> monthlyIncome,
+                                          Map<YearMonth, Double> monthlyExpenses) {
         // Get the trend chart panel
         JPanel chartsPanel = (JPanel)dashboardPanel.getComponent(1);
         JPanel trendChartPanel = (JPanel)chartsPanel.getComponent(3);
@@ -438,36 +521,6 @@ public class MainFrame extends JFrame implements DataChangeListener {
         JPanel chartContent = (JPanel)trendChartPanel.getComponent(0);
         chartContent.removeAll();
         
-        // Get data for the last 6 months
-        YearMonth currentMonth = YearMonth.from(LocalDate.now());
-        Map<YearMonth, Double> monthlyIncome = new TreeMap<>();
-        Map<YearMonth, Double> monthlyExpenses = new TreeMap<>();
-        
-        // Initialize last 6 months
-        for (int i = 5; i >= 0; i--) {
-            YearMonth month = currentMonth.minusMonths(i);
-            monthlyIncome.put(month, 0.0);
-            monthlyExpenses.put(month, 0.0);
-        }
-        
-        // Aggregate transactions by month
-        for (Transaction t : transactions) {
-            YearMonth month = YearMonth.from(t.getDate());
-            
-            // Only consider last 6 months
-            if (month.isBefore(currentMonth.minusMonths(5)) || month.isAfter(currentMonth)) {
-                continue;
-            }
-            
-            if (t.getType() == TransactionType.INCOME) {
-                double current = monthlyIncome.getOrDefault(month, 0.0);
-                monthlyIncome.put(month, current + t.getAmount());
-            } else {
-                double current = monthlyExpenses.getOrDefault(month, 0.0);
-                monthlyExpenses.put(month, current + t.getAmount());
-            }
-        }
-        
         // Create simple bar chart visualization
         chartContent.setLayout(new BorderLayout());
         JPanel dataPanel = new JPanel(new GridLayout(monthlyIncome.size(), 1, 0, 10));
@@ -534,19 +587,55 @@ public class MainFrame extends JFrame implements DataChangeListener {
      * Called when data changes in other panels
      */
     @Override
-    public void onDataChanged() {
-        // Reload data from the data manager to get fresh data
-        List<Transaction> transactions = dataManager.loadTransactions();
-        List<Budget> budgets = dataManager.loadBudgets();
+    public void onDataChanged(DataChangeEvent event) {
+        if (event.has(DataChangeEvent.Type.BULK_IMPORT)) {
+            // Everything was replaced
+            refresh(true);
+            return;
+        }
         
-        // Update dashboard with fresh data
-        updateDashboard(transactions, budgets);
+        if (event.hasTransactionChanges()) {
+            // Recompute the dashboard in the background; figures of months
+            // the change did not touch come from the query cache
+            refresh(false);
+        } else if (event.has(DataChangeEvent.Type.BUDGET_CHANGED)) {
+            // Budgets keep their spent amounts current, only redraw them
+            updateBudgetStatus(dataManager.loadBudgets());
+        }
+    }
+    
+    /**
+     * Show budget alerts without blocking the window. While the notice is
+     * open further alerts are added to it.
+     */
+    private void showBudgetAlerts(List<BudgetAlert> alerts) {
+        if (budgetAlertDialog == null) {
+            budgetAlertText = new JTextArea(6, 40);
+            budgetAlertText.setEditable(false);
+            budgetAlertText.setLineWrap(true);
+            budgetAlertText.setWrapStyleWord(true);
+            budgetAlertText.setOpaque(false);
+            
+            budgetAlertPane = new JOptionPane(new JScrollPane(budgetAlertText), JOptionPane.WARNING_MESSAGE);
+            budgetAlertDialog = budgetAlertPane.createDialog(this, "Budget Alert");
+            budgetAlertDialog.setModal(false);
+        }
+        
+        if (!budgetAlertDialog.isVisible()) {
+            budgetAlertText.setText("");
+            // Reset so OK closes the dialog again
+            budgetAlertPane.setValue(JOptionPane.UNINITIALIZED_VALUE);
+        }
+        for (BudgetAlert alert : alerts) {
+            budgetAlertText.append(alert.getMessage() + "\n");
+        }
+        budgetAlertDialog.setVisible(true);
     }
     
     /**
      * Update Budget Status chart
      */
-    private void updateBudgetStatus(List<Budget> budgets, List<Transaction> transactions) {
+    private void updateBudgetStatus(List<Budget> budgets) {
         // Get the budget chart panel
         JPanel chartsPanel = (JPanel)dashboardPanel.getComponent(1);
         JPanel budgetChartPanel = (JPanel)chartsPanel.getComponent(2);
@@ -562,21 +651,9 @@ public class MainFrame extends JFrame implements DataChangeListener {
             chartContent.setLayout(new BorderLayout());
             JPanel dataPanel = new JPanel(new GridLayout(0, 1));
             
-            // Current month for budget calculation
-            YearMonth currentMonth = YearMonth.from(LocalDate.now());
-            
             for (Budget budget : budgets) {
-                // Calculate actual spending for this budget's category
-                double actualSpending = 0.0;
-                Category budgetCategory = budget.getCategory();
-                
-                for (Transaction t : transactions) {
-                    if (t.getType() == TransactionType.EXPENSE && 
-                        t.getCategory().equals(budgetCategory) &&
-                        YearMonth.from(t.getDate()).equals(currentMonth)) {
-                        actualSpending += t.getAmount();
-                    }
-                }
+                // Actual spending in the budget's period, kept current by the data manager
+                double actualSpending = budget.getSpent();
                 
                 // Calculate percentage of budget used
                 double budgetLimit = budget.getAmount();
@@ -592,13 +669,14 @@ public class MainFrame extends JFrame implements DataChangeListener {
                 progressBar.setString(String.format("$%.2f / $%.2f (%.0f%%)", 
                     actualSpending, budgetLimit, percentUsed));
                 
-                // Set color based on usage
-                if (percentUsed >= 90) {
-                    progressBar.setForeground(Color.RED);
-                } else if (percentUsed >= 75) {
+                // Set color based on the alert thresholds reached
+                int reached = budgetAlerts.thresholdsReached(budget.getPercentSpent());
+                if (reached == 0) {
+                    progressBar.setForeground(Color.GREEN);
+                } else if (reached < budgetAlerts.getThresholds().length - 1) {
                     progressBar.setForeground(Color.ORANGE);
                 } else {
-                    progressBar.setForeground(Color.GREEN);
+                    progressBar.setForeground(Color.RED);
                 }
                 
                 row.add(progressBar, BorderLayout.CENTER);
@@ -615,7 +693,7 @@ public class MainFrame extends JFrame implements DataChangeListener {
     /**
      * Update Expenses by Category chart
      */
-    private void updateExpensesByCategory(List<Transaction> transactions) {
+    private void updateExpensesByCategory(Map<Category, Double> expensesByCategory) {
         // Get the expense chart panel
         JPanel chartsPanel = (JPanel)dashboardPanel.getComponent(1);
         JPanel expenseChartPanel = (JPanel)chartsPanel.getComponent(1);
@@ -624,15 +702,6 @@ public class MainFrame extends JFrame implements DataChangeListener {
         JPanel chartContent = (JPanel)expenseChartPanel.getComponent(0);
         chartContent.removeAll();
         
-        // Calculate expenses by category for current month
-        LocalDate today = LocalDate.now();
-        YearMonth currentMonth = YearMonth.from(today);
-        LocalDate startOfMonth = currentMonth.atDay(1);
-        LocalDate endOfMonth = currentMonth.atEndOfMonth();
-        
-        Map<Category, Double> expensesByCategory = FinancialCalculator.calculateExpensesByCategory(
-            transactions, startOfMonth, endOfMonth);
-        
         // Create simple visualization (in a real app, use a proper chart library)
         if (expensesByCategory.isEmpty()) {
             chartContent.add(new JLabel("No expense data for current month"));
@@ -657,7 +726,7 @@ public class MainFrame extends JFrame implements DataChangeListener {
     /**
      * Update Income by Category chart
      */
-    private void updateIncomeByCategory(List<Transaction> transactions) {
+    private void updateIncomeByCategory(Map<Category, Double> incomeByCategory) {
         // Get the income chart panel
         JPanel chartsPanel = (JPanel)dashboardPanel.getComponent(1);
         JPanel incomeChartPanel = (JPanel)chartsPanel.getComponent(0);
@@ -666,25 +735,6 @@ public class MainFrame extends JFrame implements DataChangeListener {
         JPanel chartContent = (JPanel)incomeChartPanel.getComponent(0);
         chartContent.removeAll();
         
-        // Calculate income by category for current month
-        LocalDate today = LocalDate.now();
-        YearMonth currentMonth = YearMonth.from(today);
-        LocalDate startOfMonth = currentMonth.atDay(1);
-        LocalDate endOfMonth = currentMonth.atEndOfMonth();
-        
-        Map<Category, Double> incomeByCategory = new HashMap<>();
-        
-        for (Transaction t : transactions) {
-            if (t.getType() == TransactionType.INCOME && 
-                !t.getDate().isBefore(startOfMonth) && 
-                !t.getDate().isAfter(endOfMonth)) {
-                
-                Category category = t.getCategory();
-                double currentAmount = incomeByCategory.getOrDefault(category, 0.0);
-                incomeByCategory.put(category, currentAmount + t.getAmount());
-            }
-        }
-        
         // Create simple visualization (in a real app, use a proper chart library)
         if (incomeByCategory.isEmpty()) {
             chartContent.add(new JLabel("No income data for current month"));
@@ -709,20 +759,16 @@ public class MainFrame extends JFrame implements DataChangeListener {
     /**
      * Update recent transactions list in dashboard
      */
-    private void updateRecentTransactions(List<Transaction> allTransactions) {
+    private void updateRecentTransactions(List<Transaction> recentTransactions) {
         // Get recent transactions panel
         JPanel recentTransactionsPanel = (JPanel)dashboardPanel.getComponent(2);
         JScrollPane scrollPane = (JScrollPane)recentTransactionsPanel.getComponent(0);
         
         // Create table model for recent transactions
         String[] columnNames = {"Date", "Type", "Category", "Description", "Amount"};
-        Object[][] data = new Object[Math.min(5, allTransactions.size())][5];
-        
-        // Sort transactions by date (most recent first)
-        List<Transaction> sortedTransactions = new ArrayList<>(allTransactions);
-        sortedTransactions.sort((t1, t2) -> t2.getDate().compareTo(t1.getDate()));
+        Object[][] data = new Object[recentTransactions.size()][5];
         
-        // Get up to 5 most recent transactions
+        // Format the most recent transactions, newest first
         Locale localeToUse = (preferences.getLocale() != null) ? preferences.getLocale() : Locale.getDefault();
         NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(localeToUse);
         
@@ -743,7 +789,7 @@ public class MainFrame extends JFrame implements DataChangeListener {
         currencyFormat.setCurrency(currencyToUse);
         
         for (int i = 0; i < data.length; i++) {
-            Transaction t = sortedTransactions.get(i);
+            Transaction t = recentTransactions.get(i);
             data[i][0] = t.getDate();
             data[i][1] = t.getType().getDisplayName();
             data[i][2] = t.getCategory().getName();
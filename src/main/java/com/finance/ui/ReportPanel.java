@@ -8,6 +8,7 @@ import java.util.List;
 
 import com.finance.data.DataManager;
 import com.finance.model.Category;
+import com.finance.model.CategoryTotals;
 import com.finance.model.Transaction;
 
 
@@ -216,25 +217,21 @@ public class ReportPanel extends JPanel {
      * @return data for the category statistics table
      */
     private Object[][] calculateCategoryStats() {
-        Map<String, Double> categoryTotals = new HashMap<>();
-        Map<String, Integer> categoryCounts = new HashMap<>();
-
+        CategoryTotals categoryTotals = new CategoryTotals();
         for (Transaction transaction : transactions) {
-            String categoryName = getCategoryName(transaction.getCategoryId());
-            double amount = transaction.getAmount();
-
-            categoryTotals.put(categoryName, categoryTotals.getOrDefault(categoryName, 0.0) + amount);
-            categoryCounts.put(categoryName, categoryCounts.getOrDefault(categoryName, 0) + 1);
+            categoryTotals.add(transaction);
         }
 
-        Object[][] data = new Object[categoryTotals.size()][4];
+        Map<Category, Double> totals = categoryTotals.toMap();
+        Object[][] data = new Object[totals.size()][4];
         int i = 0;
-        for (String category : categoryTotals.keySet()) {
-            double total = categoryTotals.get(category);
-            int count = categoryCounts.get(category);
+        for (Map.Entry<Category, Double> entry : totals.entrySet()) {
+            Category category = entry.getKey();
+            double total = entry.getValue();
+            long count = categoryTotals.getCount(category);
             double average = total / count;
 
-            data[i][0] = category;
+            data[i][0] = category != null ? category.getName() : "Unknown";
             data[i][1] = String.format("$%.2f", total);
             data[i][2] = count;
             data[i][3] = String.format("$%.2f", average);
@@ -289,21 +286,6 @@ public class ReportPanel extends JPanel {
         return total;
     }
 
-    /**
-     * Get category name by ID
-     *
-     * @param categoryId the ID of the category
-     * @return the name of the category
-     */
-    private String getCategoryName(int categoryId) {
-        for (Category category : categories) {
-            if (category.getId() == categoryId) {
-                return category.getName();
-            }
-        }
-        return "Unknown";
-    }
-
     /**
      * Set transactions data
      *
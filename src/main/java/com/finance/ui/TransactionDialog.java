@@ -274,10 +274,14 @@ public class TransactionDialog extends JDialog {
             type = "Income".equals(typeCombo.getSelectedItem()) ? 
                 TransactionType.INCOME : TransactionType.EXPENSE;
                 
+            // Keep the id of an edited transaction so the edit replaces it
+            String id = isNewTransaction ? UUID.randomUUID().toString() : transaction.getId();
+            
             // Create the appropriate transaction type
             if (type == TransactionType.INCOME) {
                 // Create a new IncomeTransaction
                 this.transaction = new IncomeTransaction(
+                    id,
                     amount,
                     description,
                     date,
@@ -286,6 +290,7 @@ public class TransactionDialog extends JDialog {
             } else {
                 // Create a new ExpenseTransaction
                 this.transaction = new ExpenseTransaction(
+                    id,
                     amount,
                     description,
                     date,
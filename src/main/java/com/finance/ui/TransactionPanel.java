@@ -3,18 +3,22 @@ package com.finance.ui;
 import com.finance.data.DataManager;
 import com.finance.model.*;
 import com.finance.service.FinancialCalculator;
+import com.finance.service.RankedSearchIndex;
+import com.finance.service.SearchCriteria;
+import com.finance.service.TransactionSearchIndex;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Panel for managing transactions
@@ -27,16 +31,33 @@ public class TransactionPanel extends JPanel {
     
     // UI Components
     private JTable transactionTable;
-    private DefaultTableModel tableModel;
+    private TransactionTableModel tableModel;
     private JTextField searchField;
     private JButton addButton;
     private JButton editButton;
     private JButton deleteButton;
     private JButton filterButton;
     private JComboBox<String> typeFilterCombo;
+    private JCheckBox fuzzyCheckBox;
+    
+    // Search: typing restarts the timer, which searches once the user pauses
+    private static final int SEARCH_DELAY_MS = 150;
+    // Rows shown for a fuzzy search, best match first
+    private static final int FUZZY_RESULT_LIMIT = 500;
+    
+    // The search indexes are built on a background thread whenever the list
+    // is set, the fuzzy one once fuzzy search is used, and kept current as
+    // transactions change. Changes made while they are being built are
+    // applied once they are done.
+    private transient TransactionSearchIndex searchIndex; // null while being built
+    private transient RankedSearchIndex rankedIndex; // null until fuzzy search is used
+    private transient SwingWorker<Void, Void> indexWorker;
+    private final transient List<Transaction[]> pendingIndexChanges = new ArrayList<>(); // previous and current
+    private transient List<String> categoryNames = new ArrayList<>();
+    private Timer searchTimer;
     
     // Change notification
-    private DataChangeListener dataChangeListener;
+    private transient DataChangeBus dataChangeBus;
     
     /**
      * Constructor
@@ -45,6 +66,7 @@ public class TransactionPanel extends JPanel {
         this.dataManager = dataManager;
         this.transactions = new ArrayList<>();
         this.categories = new ArrayList<>();
+        this.searchIndex = new TransactionSearchIndex(transactions);
         
         setupUI();
     }
@@ -56,14 +78,8 @@ public class TransactionPanel extends JPanel {
         setLayout(new BorderLayout());
         setBorder(new EmptyBorder(10, 10, 10, 10));
         
-        // Create table model with columns
-        String[] columnNames = {"Date", "Type", "Category", "Description", "Amount", "Notes"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table cells read-only
-            }
-        };
+        // Create table model; cells are read-only and formatted as they are shown
+        tableModel = new TransactionTableModel();
         
         transactionTable = new JTable(tableModel);
         transactionTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -78,6 +94,9 @@ public class TransactionPanel extends JPanel {
         searchField = new JTextField(20);
         searchField.setToolTipText("Search transactions");
         
+        fuzzyCheckBox = new JCheckBox("Fuzzy");
+        fuzzyCheckBox.setToolTipText("Tolerate typos and show the best matches first");
+        
         typeFilterCombo = new JComboBox<>(new String[] {"All Types", "Income", "Expense"});
         
         addButton = new JButton("Add");
@@ -87,6 +106,7 @@ public class TransactionPanel extends JPanel {
         
         toolbar.add(new JLabel("Search: "));
         toolbar.add(searchField);
+        toolbar.add(fuzzyCheckBox);
         toolbar.add(Box.createHorizontalStrut(10));
         toolbar.add(new JLabel("Type: "));
         toolbar.add(typeFilterCombo);
@@ -119,6 +139,28 @@ public class TransactionPanel extends JPanel {
         editButton.addActionListener(e -> editTransaction());
         deleteButton.addActionListener(e -> deleteTransaction());
         filterButton.addActionListener(e -> applyFilter());
+        typeFilterCombo.addActionListener(e -> applyFilter());
+        fuzzyCheckBox.addActionListener(e -> applyFilter());
+        
+        // Search as the user types
+        searchTimer = new Timer(SEARCH_DELAY_MS, e -> applyFilter());
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+        });
         
         // Initial state - disable buttons until transactions are loaded
         editButton.setEnabled(false);
@@ -137,6 +179,7 @@ public class TransactionPanel extends JPanel {
      */
     public void setTransactions(List<Transaction> transactions) {
         this.transactions = transactions;
+        buildSearchIndexes();
         refreshTable();
         updateSummary();
     }
@@ -146,36 +189,30 @@ public class TransactionPanel extends JPanel {
      */
     public void setCategories(List<Category> categories) {
         this.categories = categories;
+        
+        // Category names are searched, so a rename needs a new index
+        List<String> names = new ArrayList<>();
+        for (Category category : categories) {
+            names.add(category.getName());
+        }
+        if (!names.equals(categoryNames)) {
+            categoryNames = names;
+            buildSearchIndexes();
+        }
     }
     
     /**
-     * Set data change listener to notify when transactions change
+     * Set the bus to publish transaction changes on
      */
-    public void setDataChangeListener(DataChangeListener listener) {
-        this.dataChangeListener = listener;
+    public void setDataChangeBus(DataChangeBus bus) {
+        this.dataChangeBus = bus;
     }
     
     /**
      * Refresh table with current transaction data
      */
     private void refreshTable() {
-        // Clear table
-        tableModel.setRowCount(0);
-        
-        // Add rows for each transaction
-        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
-        
-        for (Transaction transaction : transactions) {
-            Object[] row = new Object[6];
-            row[0] = transaction.getDate().format(dateFormatter);
-            row[1] = transaction.getType().getDisplayName();
-            row[2] = transaction.getCategory().getName();
-            row[3] = transaction.getDescription();
-            row[4] = String.format("$%.2f", transaction.getAmount());
-            row[5] = transaction.getNotes();
-            
-            tableModel.addRow(row);
-        }
+        tableModel.setTransactions(transactions);
     }
     
     /**
@@ -193,9 +230,9 @@ public class TransactionPanel extends JPanel {
         LocalDate maxDate = LocalDate.of(2100, 12, 31);
         
         double totalIncome = FinancialCalculator.calculateTotalIncome(
-            transactions, minDate, maxDate);
+            dataManager, minDate, maxDate);
         double totalExpenses = FinancialCalculator.calculateTotalExpenses(
-            transactions, minDate, maxDate);
+            dataManager, minDate, maxDate);
         double balance = totalIncome - totalExpenses;
         
         // Update labels
@@ -220,24 +257,23 @@ public class TransactionPanel extends JPanel {
         if (dialog.getTransaction() != null) {
             // Add new transaction
             Transaction newTransaction = dialog.getTransaction();
-            transactions.add(newTransaction);
             
-            // Save to data manager
-            dataManager.saveTransaction(newTransaction);
+            // Save to data manager first, the list only changes if it succeeds
+            try {
+                dataManager.saveTransaction(newTransaction);
+            } catch (UncheckedIOException e) {
+                showSaveError(e);
+                return;
+            }
+            transactions.add(newTransaction);
+            indexChange(null, newTransaction);
             
             // Refresh UI
-            refreshTable();
+            tableModel.addTransaction(newTransaction);
             updateSummary();
             
             // Notify listeners of data change
-            if (dataChangeListener != null) {
-                dataChangeListener.onDataChanged();
-            }
-            
-            // Notify listeners of data change
-            if (dataChangeListener != null) {
-                dataChangeListener.onDataChanged();
-            }
+            publish(DataChangeEvent.transactionAdded(newTransaction));
         }
     }
     
@@ -248,7 +284,7 @@ public class TransactionPanel extends JPanel {
         int selectedRow = transactionTable.getSelectedRow();
         if (selectedRow == -1) return;
         
-        Transaction selectedTransaction = transactions.get(selectedRow);
+        Transaction selectedTransaction = tableModel.getTransaction(selectedRow);
         
         TransactionDialog dialog = new TransactionDialog(
             SwingUtilities.getWindowAncestor(this), 
@@ -262,19 +298,26 @@ public class TransactionPanel extends JPanel {
         if (dialog.getTransaction() != null) {
             // Update transaction
             Transaction updatedTransaction = dialog.getTransaction();
-            transactions.set(selectedRow, updatedTransaction);
             
-            // Save to data manager
-            dataManager.updateTransaction(updatedTransaction);
+            // Save to data manager first, the list only changes if it succeeds
+            try {
+                dataManager.updateTransaction(updatedTransaction);
+            } catch (UncheckedIOException e) {
+                showSaveError(e);
+                return;
+            }
+            int index = transactions.indexOf(selectedTransaction);
+            if (index != -1) {
+                transactions.set(index, updatedTransaction);
+            }
+            indexChange(selectedTransaction, updatedTransaction);
             
             // Refresh UI
-            refreshTable();
+            tableModel.setTransaction(selectedRow, updatedTransaction);
             updateSummary();
             
             // Notify listeners of data change
-            if (dataChangeListener != null) {
-                dataChangeListener.onDataChanged();
-            }
+            publish(DataChangeEvent.transactionUpdated(selectedTransaction, updatedTransaction));
         }
     }
     
@@ -285,7 +328,7 @@ public class TransactionPanel extends JPanel {
         int selectedRow = transactionTable.getSelectedRow();
         if (selectedRow == -1) return;
         
-        Transaction selectedTransaction = transactions.get(selectedRow);
+        Transaction selectedTransaction = tableModel.getTransaction(selectedRow);
         
         // Confirm deletion
         int choice = JOptionPane.showConfirmDialog(
@@ -296,15 +339,135 @@ public class TransactionPanel extends JPanel {
         );
         
         if (choice == JOptionPane.YES_OPTION) {
-            // Remove from list
-            transactions.remove(selectedRow);
-            
-            // Remove from data manager
-            dataManager.deleteTransaction(selectedTransaction.getId());
+            // Remove from data manager first, the list only changes if it succeeds
+            try {
+                dataManager.deleteTransaction(selectedTransaction.getId());
+            } catch (UncheckedIOException e) {
+                showSaveError(e);
+                return;
+            }
+            transactions.remove(selectedTransaction);
+            indexChange(selectedTransaction, null);
             
             // Refresh UI
-            refreshTable();
+            tableModel.removeTransaction(selectedRow);
             updateSummary();
+            
+            // Notify listeners of data change
+            publish(DataChangeEvent.transactionDeleted(selectedTransaction));
+        }
+    }
+    
+    /**
+     * Tell the user a change could not be made because stored transactions
+     * could not be read
+     */
+    private void showSaveError(UncheckedIOException e) {
+        JOptionPane.showMessageDialog(this,
+            "The change could not be saved. " + e.getMessage(),
+            "Error",
+            JOptionPane.ERROR_MESSAGE);
+    }
+    
+    /**
+     * Build the search indexes of the current list on a background thread,
+     * then search again with them. The fuzzy search index is only built
+     * while fuzzy search is selected.
+     */
+    private void buildSearchIndexes() {
+        if (indexWorker != null) {
+            indexWorker.cancel(false);
+        }
+        searchIndex = null;
+        rankedIndex = null;
+        pendingIndexChanges.clear();
+        
+        // Copied here: the list keeps changing on this thread
+        List<Transaction> snapshot = new ArrayList<>(transactions);
+        boolean ranked = fuzzyCheckBox.isSelected();
+        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+            private TransactionSearchIndex builtIndex;
+            private RankedSearchIndex builtRankedIndex;
+            
+            @Override
+            protected Void doInBackground() {
+                builtIndex = new TransactionSearchIndex(snapshot);
+                if (ranked && !isCancelled()) {
+                    builtRankedIndex = new RankedSearchIndex(snapshot);
+                }
+                return null;
+            }
+            
+            @Override
+            protected void done() {
+                if (isCancelled() || indexWorker != this) return;
+                indexWorker = null;
+                
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException e) {
+                    System.err.println("Error building search index: " + e.getCause());
+                    pendingIndexChanges.clear();
+                    return;
+                }
+                for (Transaction[] change : pendingIndexChanges) {
+                    applyIndexChange(builtIndex, builtRankedIndex, change[0], change[1]);
+                }
+                pendingIndexChanges.clear();
+                searchIndex = builtIndex;
+                rankedIndex = builtRankedIndex;
+                
+                if (!searchField.getText().trim().isEmpty()) {
+                    applyFilter();
+                }
+            }
+        };
+        indexWorker = worker;
+        worker.execute();
+    }
+    
+    /**
+     * Keep the search indexes current, or remember the change until they are built
+     * 
+     * @param previous the transaction before the change, null if added
+     * @param current the transaction after the change, null if deleted
+     */
+    private void indexChange(Transaction previous, Transaction current) {
+        if (indexWorker != null) {
+            pendingIndexChanges.add(new Transaction[] {previous, current});
+        } else {
+            applyIndexChange(searchIndex, rankedIndex, previous, current);
+        }
+    }
+    
+    /**
+     * Apply a change to the indexes that exist
+     */
+    private static void applyIndexChange(TransactionSearchIndex index, RankedSearchIndex rankedIndex,
+                                         Transaction previous, Transaction current) {
+        if (index != null) {
+            if (previous == null) {
+                index.add(current);
+            } else if (current == null) {
+                index.remove(previous);
+            } else {
+                index.replace(previous, current);
+            }
+        }
+        if (rankedIndex != null) {
+            if (previous == null) {
+                rankedIndex.add(current);
+            } else if (current == null) {
+                rankedIndex.remove(previous);
+            } else {
+                rankedIndex.replace(previous, current);
+            }
+        }
+    }
+    
+    private void publish(DataChangeEvent event) {
+        if (dataChangeBus != null) {
+            dataChangeBus.publish(event);
         }
     }
     
@@ -312,46 +475,57 @@ public class TransactionPanel extends JPanel {
      * Apply search and filter criteria
      */
     private void applyFilter() {
-        String searchText = searchField.getText().trim().toLowerCase();
+        searchTimer.stop();
+        String searchText = searchField.getText().trim();
         String typeFilter = (String)typeFilterCombo.getSelectedItem();
         
-        List<Transaction> filteredTransactions = new ArrayList<>(transactions);
+        TransactionType type = null;
+        if (!"All Types".equals(typeFilter)) {
+            type = "Income".equals(typeFilter) ? TransactionType.INCOME : TransactionType.EXPENSE;
+        }
+        
+        // Fuzzy search ranks the best matches of the type, typos allowed;
+        // the first one builds its index, then runs again
+        if (fuzzyCheckBox.isSelected() && !searchText.isEmpty()) {
+            if (rankedIndex == null) {
+                if (indexWorker == null) {
+                    buildSearchIndexes();
+                }
+                return;
+            }
+            SearchCriteria criteria = new SearchCriteria(searchText);
+            criteria.setType(type);
+            criteria.setLimit(FUZZY_RESULT_LIMIT);
+            tableModel.setTransactions(rankedIndex.search(criteria));
+            return;
+        }
         
-        // Apply search text filter if provided
+        List<Transaction> filteredTransactions = transactions;
+        
+        // Apply search text filter if provided, through the trigram index;
+        // while it is being built, the search runs once it is done
         if (!searchText.isEmpty()) {
-            filteredTransactions = filteredTransactions.stream()
-                .filter(t -> 
-                    t.getDescription().toLowerCase().contains(searchText) ||
-                    t.getCategory().getName().toLowerCase().contains(searchText) ||
-                    t.getNotes().toLowerCase().contains(searchText))
-                .collect(Collectors.toList());
+            if (searchIndex == null) {
+                if (indexWorker == null) {
+                    buildSearchIndexes();
+                }
+                return;
+            }
+            filteredTransactions = searchIndex.search(searchText);
         }
         
         // Apply transaction type filter if not "All Types"
-        if (!"All Types".equals(typeFilter)) {
-            TransactionType type = "Income".equals(typeFilter) ? 
-                TransactionType.INCOME : TransactionType.EXPENSE;
-                
-            filteredTransactions = filteredTransactions.stream()
-                .filter(t -> t.getType() == type)
-                .collect(Collectors.toList());
+        if (type != null) {
+            List<Transaction> ofType = new ArrayList<>();
+            for (Transaction transaction : filteredTransactions) {
+                if (transaction.getType() == type) {
+                    ofType.add(transaction);
+                }
+            }
+            filteredTransactions = ofType;
         }
         
         // Update table with filtered transactions
-        tableModel.setRowCount(0);
-        
-        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
-        
-        for (Transaction transaction : filteredTransactions) {
-            Object[] row = new Object[6];
-            row[0] = transaction.getDate().format(dateFormatter);
-            row[1] = transaction.getType().getDisplayName();
-            row[2] = transaction.getCategory().getName();
-            row[3] = transaction.getDescription();
-            row[4] = String.format("$%.2f", transaction.getAmount());
-            row[5] = transaction.getNotes();
-            
-            tableModel.addRow(row);
-        }
+        tableModel.setTransactions(filteredTransactions);
     }
 }
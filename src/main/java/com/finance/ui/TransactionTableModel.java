@@ -0,0 +1,103 @@
+package com.finance.ui;
+
+import com.finance.model.Transaction;
+
+import javax.swing.table.AbstractTableModel;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Table model showing a list of transactions, one per row. Cells are
+ * formatted when the table asks for them, which it only does for the rows
+ * on screen, so showing a long list costs one list copy and one table
+ * event. Adding, replacing and removing a row fires an event for that row
+ * alone.
+ */
+public class TransactionTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 2490309412535928050L;
+    private static final String[] COLUMN_NAMES = {"Date", "Type", "Category", "Description", "Amount", "Notes"};
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+
+    private transient List<Transaction> rows = new ArrayList<>();
+
+    /**
+     * Show a new list of transactions
+     */
+    public void setTransactions(List<Transaction> transactions) {
+        rows = new ArrayList<>(transactions);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Get the transaction shown in a row
+     */
+    public Transaction getTransaction(int row) {
+        return rows.get(row);
+    }
+
+    /**
+     * Add a transaction as the last row
+     */
+    public void addTransaction(Transaction transaction) {
+        rows.add(transaction);
+        fireTableRowsInserted(rows.size() - 1, rows.size() - 1);
+    }
+
+    /**
+     * Show another transaction in a row
+     */
+    public void setTransaction(int row, Transaction transaction) {
+        rows.set(row, transaction);
+        fireTableRowsUpdated(row, row);
+    }
+
+    /**
+     * Remove a row
+     */
+    public void removeTransaction(int row) {
+        rows.remove(row);
+        fireTableRowsDeleted(row, row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Transaction transaction = rows.get(row);
+        switch (column) {
+            case 0:
+                return transaction.getDate() == null ? "" : transaction.getDate().format(DATE_FORMAT);
+            case 1:
+                return transaction.getType() == null ? "" : transaction.getType().getDisplayName();
+            case 2:
+                return transaction.getCategory() == null ? "" : transaction.getCategory().getName();
+            case 3:
+                return transaction.getDescription();
+            case 4:
+                return String.format("$%.2f", transaction.getAmount());
+            case 5:
+                return transaction.getNotes();
+            default:
+                return null;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.finance.util;
 
+import com.finance.data.AggregateCell;
+import com.finance.data.DataManager;
+import com.finance.model.Money;
 import com.finance.model.Transaction;
 import com.finance.model.TransactionType;
 
@@ -22,7 +25,7 @@ public class FinancialCalculator {
     public static double calculateTotalIncome(List<Transaction> transactions, 
                                             LocalDate startDate, 
                                             LocalDate endDate) {
-        double total = 0;
+        long total = 0;
         
         for (Transaction t : transactions) {
             LocalDate transactionDate = t.getDate();
@@ -30,11 +33,11 @@ public class FinancialCalculator {
             if (t.getType() == TransactionType.INCOME && 
                 !transactionDate.isBefore(startDate) && 
                 !transactionDate.isAfter(endDate)) {
-                total += t.getAmount();
+                total += t.getAmountCents();
             }
         }
         
-        return total;
+        return Money.toAmount(total);
     }
     
     /**
@@ -48,7 +51,7 @@ public class FinancialCalculator {
     public static double calculateTotalExpenses(List<Transaction> transactions, 
                                               LocalDate startDate, 
                                               LocalDate endDate) {
-        double total = 0;
+        long total = 0;
         
         for (Transaction t : transactions) {
             LocalDate transactionDate = t.getDate();
@@ -56,11 +59,11 @@ public class FinancialCalculator {
             if (t.getType() == TransactionType.EXPENSE && 
                 !transactionDate.isBefore(startDate) && 
                 !transactionDate.isAfter(endDate)) {
-                total += t.getAmount();
+                total += t.getAmountCents();
             }
         }
         
-        return total;
+        return Money.toAmount(total);
     }
     
     /**
@@ -101,4 +104,88 @@ public class FinancialCalculator {
         double savingsRate = ((income - expenses) / income) * 100;
         return savingsRate;
     }
+    
+    /**
+     * Calculate total income for a given date range from the data
+     * manager's aggregates
+     * 
+     * @param dataManager Source of the transactions
+     * @param startDate Start date of the period (inclusive)
+     * @param endDate End date of the period (inclusive)
+     * @return Total income amount
+     */
+    public static double calculateTotalIncome(DataManager dataManager, 
+                                            LocalDate startDate, 
+                                            LocalDate endDate) {
+        return sumOf(dataManager.getAggregates(startDate, endDate), TransactionType.INCOME);
+    }
+    
+    /**
+     * Calculate total expenses for a given date range from the data
+     * manager's aggregates
+     * 
+     * @param dataManager Source of the transactions
+     * @param startDate Start date of the period (inclusive)
+     * @param endDate End date of the period (inclusive)
+     * @return Total expense amount
+     */
+    public static double calculateTotalExpenses(DataManager dataManager, 
+                                              LocalDate startDate, 
+                                              LocalDate endDate) {
+        return sumOf(dataManager.getAggregates(startDate, endDate), TransactionType.EXPENSE);
+    }
+    
+    /**
+     * Calculate net cashflow (income - expenses) for a given date range
+     * from the data manager's aggregates
+     * 
+     * @param dataManager Source of the transactions
+     * @param startDate Start date of the period (inclusive)
+     * @param endDate End date of the period (inclusive)
+     * @return Net cashflow amount
+     */
+    public static double calculateNetCashflow(DataManager dataManager, 
+                                             LocalDate startDate, 
+                                             LocalDate endDate) {
+        List<AggregateCell> cells = dataManager.getAggregates(startDate, endDate);
+        return sumOf(cells, TransactionType.INCOME) - sumOf(cells, TransactionType.EXPENSE);
+    }
+    
+    /**
+     * Calculate savings rate (percentage of income saved) from the data
+     * manager's aggregates
+     * 
+     * @param dataManager Source of the transactions
+     * @param startDate Start date of the period (inclusive)
+     * @param endDate End date of the period (inclusive)
+     * @return Savings rate as a percentage (0-100)
+     */
+    public static double calculateSavingsRate(DataManager dataManager, 
+                                            LocalDate startDate, 
+                                            LocalDate endDate) {
+        List<AggregateCell> cells = dataManager.getAggregates(startDate, endDate);
+        double income = sumOf(cells, TransactionType.INCOME);
+        double expenses = sumOf(cells, TransactionType.EXPENSE);
+        
+        if (income <= 0) {
+            return 0; // Avoid division by zero
+        }
+        
+        return ((income - expenses) / income) * 100;
+    }
+    
+    /**
+     * Add up the aggregate cells of one transaction type
+     */
+    private static double sumOf(List<AggregateCell> cells, TransactionType type) {
+        long total = 0;
+        
+        for (AggregateCell cell : cells) {
+            if (cell.getType() == type) {
+                total += cell.getSumCents();
+            }
+        }
+        
+        return Money.toAmount(total);
+    }
 }
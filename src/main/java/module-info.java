@@ -3,6 +3,7 @@ module com.example.financialtracker {
     requires javafx.fxml;
     requires java.desktop;
     requires java.prefs;
+    requires static jdk.incubator.vector;
 
 
     opens com.example.financialtracker to javafx.fxml;
@@ -0,0 +1,131 @@
+package com.finance.data;
+
+import com.finance.model.Category;
+import com.finance.model.ExpenseTransaction;
+import com.finance.model.IncomeTransaction;
+import com.finance.model.Transaction;
+import com.finance.model.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BalanceIndexTest {
+    private static final Category FOOD = new Category(1, "Food", TransactionType.EXPENSE);
+    private static final Category SALARY = new Category(2, "Salary", TransactionType.INCOME);
+    private static final LocalDate START = LocalDate.of(2024, 6, 1);
+
+    @Test
+    void emptyIndexHasNoBalance() {
+        BalanceIndex index = new BalanceIndex();
+        assertEquals(0, index.balanceBefore(START.toEpochDay()));
+        assertEquals(0, index.total());
+    }
+
+    @Test
+    void incomeAddsAndExpensesSubtract() {
+        BalanceIndex index = new BalanceIndex();
+        index.add(new IncomeTransaction(100, "Pay", START, SALARY));
+        index.add(new ExpenseTransaction(30.25, "Shop", START.plusDays(1), FOOD));
+
+        assertEquals(0, index.balanceBefore(START.toEpochDay()));
+        assertEquals(10000, index.balanceBefore(START.plusDays(1).toEpochDay()));
+        assertEquals(6975, index.balanceBefore(START.plusDays(2).toEpochDay()));
+        assertEquals(6975, index.total());
+    }
+
+    @Test
+    void growsToEarlierAndLaterDates() {
+        BalanceIndex index = new BalanceIndex();
+        List<Transaction> added = new ArrayList<>();
+        // Each date is further out than the range covered so far, on alternating sides
+        int[] offsets = {0, 700, -900, 3000, -5000, 20000, -40000, 1};
+        for (int offset : offsets) {
+            Transaction transaction = new IncomeTransaction(offset + 50_000, "Offset " + offset,
+                START.plusDays(offset), SALARY);
+            index.add(transaction);
+            added.add(transaction);
+            assertBalances(index, added);
+        }
+    }
+
+    @Test
+    void matchesBruteForceAfterRandomChanges() {
+        Random random = new Random(42);
+        BalanceIndex index = new BalanceIndex();
+        List<Transaction> added = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            if (!added.isEmpty() && random.nextInt(4) == 0) {
+                index.remove(added.remove(random.nextInt(added.size())));
+                continue;
+            }
+            LocalDate date = START.plusDays(random.nextInt(6000) - 3000);
+            double amount = random.nextInt(100_000) / 100.0;
+            Transaction transaction = random.nextBoolean()
+                ? new IncomeTransaction(amount, "Income " + i, date, SALARY)
+                : new ExpenseTransaction(amount, "Expense " + i, date, FOOD);
+            index.add(transaction);
+            added.add(transaction);
+        }
+        assertBalances(index, added);
+    }
+
+    @Test
+    void undatedTransactionsOnlyCountTowardsTheTotal() {
+        BalanceIndex index = new BalanceIndex();
+        index.add(new IncomeTransaction(100, "Pay", START, SALARY));
+        Transaction undated = new ExpenseTransaction(40, "Undated", null, FOOD);
+        index.add(undated);
+
+        assertEquals(10000, index.balanceBefore(START.plusDays(1).toEpochDay()));
+        assertEquals(6000, index.total());
+
+        index.remove(undated);
+        assertEquals(10000, index.total());
+    }
+
+    @Test
+    void visitorAmountsMatchTransactions() {
+        BalanceIndex index = new BalanceIndex();
+        index.visit((int) START.toEpochDay(), SALARY, TransactionType.INCOME, 500);
+        index.visit((int) START.toEpochDay(), FOOD, TransactionType.EXPENSE, 200);
+        index.visit(TransactionFileFormat.NO_DATE, FOOD, TransactionType.EXPENSE, 100);
+
+        assertEquals(300, index.balanceBefore(START.plusDays(1).toEpochDay()));
+        assertEquals(200, index.total());
+    }
+
+    /**
+     * Check the balance before every day around the transactions against a sum
+     */
+    private static void assertBalances(BalanceIndex index, List<Transaction> transactions) {
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        long total = 0;
+        for (Transaction transaction : transactions) {
+            first = Math.min(first, transaction.getDate().toEpochDay());
+            last = Math.max(last, transaction.getDate().toEpochDay());
+            total += signedCents(transaction);
+        }
+        assertEquals(total, index.total());
+
+        for (long day = first - 2; day <= last + 2; day++) {
+            long expected = 0;
+            for (Transaction transaction : transactions) {
+                if (transaction.getDate().toEpochDay() < day) {
+                    expected += signedCents(transaction);
+                }
+            }
+            assertEquals(expected, index.balanceBefore(day), "before epoch day " + day);
+        }
+    }
+
+    private static long signedCents(Transaction transaction) {
+        long cents = transaction.getAmountCents();
+        return transaction.getType() == TransactionType.INCOME ? cents : -cents;
+    }
+}
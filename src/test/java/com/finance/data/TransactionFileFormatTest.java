@@ -0,0 +1,147 @@
+package com.finance.data;
+
+import com.finance.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionFileFormatTest {
+    private static final Category FOOD = new Category(1, "Food", TransactionType.EXPENSE);
+    private static final Category SALARY = new Category(2, "Salary", TransactionType.INCOME);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mappedFileReadsBackEveryField() throws IOException {
+        List<Transaction> transactions = sample();
+        File file = write(transactions);
+
+        assertTrue(TransactionFileFormat.isColumnar(file));
+        assertSameTransactions(transactions, new TransactionSegment(MappedTransactionFile.map(file)).toList());
+    }
+
+    @Test
+    void heapCopyReadsBackEveryField() throws IOException {
+        List<Transaction> transactions = sample();
+        File file = write(transactions);
+
+        assertSameTransactions(transactions, new TransactionSegment(MappedTransactionFile.read(file)).toList());
+    }
+
+    @Test
+    void rowsAreStoredInDateOrderWithUndatedFirst() throws IOException {
+        MappedTransactionFile mapped = MappedTransactionFile.map(write(sample()));
+
+        assertTrue(mapped.isSortedByDate());
+        assertEquals(TransactionFileFormat.NO_DATE, mapped.epochDay(0));
+        for (int row = 2; row < mapped.size(); row++) {
+            assertTrue(mapped.epochDay(row - 1) <= mapped.epochDay(row), "row " + row);
+        }
+    }
+
+    @Test
+    void largeAmountsKeepEveryCent() throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        Transaction large = new IncomeTransaction(0, "Bonus", LocalDate.of(2024, 1, 2), SALARY);
+        large.setAmountCents(50_000_000_000L);
+        transactions.add(large);
+        transactions.add(new ExpenseTransaction(0.01, "Gum", LocalDate.of(2024, 1, 1), FOOD));
+
+        MappedTransactionFile mapped = MappedTransactionFile.map(write(transactions));
+        assertEquals(1, mapped.cents(0));
+        assertEquals(50_000_000_000L, mapped.cents(1));
+    }
+
+    @Test
+    void emptyListWritesAnEmptyFile() throws IOException {
+        MappedTransactionFile mapped = MappedTransactionFile.map(write(new ArrayList<>()));
+        assertEquals(0, mapped.size());
+    }
+
+    @Test
+    void segmentChangesApplyOnTopOfTheFile() throws IOException {
+        List<Transaction> transactions = sample();
+        TransactionSegment segment = new TransactionSegment(MappedTransactionFile.map(write(transactions)));
+
+        Transaction edited = new ExpenseTransaction(transactions.get(0).getId(), 99.99, "Edited",
+            transactions.get(0).getDate(), FOOD);
+        Transaction added = new ExpenseTransaction(3, "Added", LocalDate.of(2024, 5, 1), FOOD);
+        assertTrue(segment.replace(edited));
+        assertTrue(segment.remove(transactions.get(1).getId()));
+        segment.append(added);
+
+        assertEquals(transactions.size(), segment.size());
+        assertEquals("Edited", segment.get(edited.getId()).getDescription());
+        assertNull(segment.get(transactions.get(1).getId()));
+        assertEquals("Added", segment.get(added.getId()).getDescription());
+
+        // The changes survive a write and a fresh read
+        TransactionSegment reread = new TransactionSegment(MappedTransactionFile.map(write(segment.toList())));
+        assertSameTransactions(segment.toList(), reread.toList());
+    }
+
+    private List<Transaction> sample() {
+        List<Transaction> transactions = new ArrayList<>();
+        Transaction groceries = new ExpenseTransaction(42.17, "Groceries", LocalDate.of(2024, 3, 14), FOOD);
+        groceries.setNotes("weekly shop");
+        transactions.add(groceries);
+        transactions.add(new IncomeTransaction("payroll-2024-03", 3100, "Pay", LocalDate.of(2024, 3, 1), SALARY));
+        transactions.add(new Expense(8.5, "Lunch", LocalDate.of(2024, 3, 2), FOOD, PaymentMethod.DEBIT_CARD, true));
+        transactions.add(new Income(250, "Gift", LocalDate.of(2024, 2, 20), SALARY, IncomeSource.OTHER));
+        transactions.add(new ExpenseTransaction(3, "Undated", null, null));
+        return transactions;
+    }
+
+    private File write(List<Transaction> transactions) throws IOException {
+        File file = directory.resolve("segment-" + System.nanoTime() + ".dat").toFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            TransactionFileFormat.write(transactions, channel);
+        }
+        return file;
+    }
+
+    /**
+     * Compare by id, as files store rows in date order
+     */
+    private static void assertSameTransactions(List<Transaction> expected, List<Transaction> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (Transaction want : expected) {
+            Transaction got = null;
+            for (Transaction candidate : actual) {
+                if (candidate.getId().equals(want.getId())) got = candidate;
+            }
+            assertNotNull(got);
+            assertSame(want.getClass(), got.getClass());
+            assertEquals(want.getAmountCents(), got.getAmountCents());
+            assertEquals(want.getDate(), got.getDate());
+            assertEquals(want.getDescription(), got.getDescription());
+            assertEquals(want.getNotes(), got.getNotes());
+            assertEquals(want.getType(), got.getType());
+            if (want.getCategory() == null) {
+                assertNull(got.getCategory());
+            } else {
+                assertEquals(want.getCategory().getName(), got.getCategory().getName());
+                assertEquals(want.getCategory().getType(), got.getCategory().getType());
+            }
+            if (want instanceof Expense) {
+                assertEquals(((Expense) want).getPaymentMethod(), ((Expense) got).getPaymentMethod());
+                assertEquals(((Expense) want).isEssential(), ((Expense) got).isEssential());
+            }
+            if (want instanceof Income) {
+                assertEquals(((Income) want).getSource(), ((Income) got).getSource());
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.finance.data;
+
+import com.finance.model.Category;
+import com.finance.model.ExpenseTransaction;
+import com.finance.model.Transaction;
+import com.finance.model.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionJournalTest {
+    private static final Category FOOD = new Category(1, "Food", TransactionType.EXPENSE);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysRecordsInOrder() throws IOException {
+        TransactionJournal journal = journal();
+        Transaction first = expense("Groceries");
+        Transaction second = expense("Coffee");
+        journal.appendPut(first);
+        journal.appendPut(second);
+        journal.appendDelete(first.getId());
+        journal.close();
+
+        Recorder recorder = new Recorder();
+        assertEquals(3, journal().replay(recorder));
+        assertEquals(List.of("put " + first.getId(), "put " + second.getId(), "delete " + first.getId()),
+            recorder.records);
+    }
+
+    @Test
+    void recordsAppendedAfterTornTailAreReplayed() throws IOException {
+        TransactionJournal journal = journal();
+        Transaction kept = expense("Groceries");
+        journal.appendPut(kept);
+        journal.appendPut(expense("Coffee"));
+        journal.close();
+
+        // A crash in the middle of the second record
+        File file = file();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        journal = journal();
+        Recorder recorder = new Recorder();
+        assertEquals(1, journal.replay(recorder));
+        assertFalse(journal.isDamaged());
+
+        Transaction later = expense("Rent");
+        journal.appendPut(later);
+        journal.close();
+
+        recorder = new Recorder();
+        journal = journal();
+        assertEquals(2, journal.replay(recorder));
+        assertEquals(List.of("put " + kept.getId(), "put " + later.getId()), recorder.records);
+        assertFalse(journal.isDamaged());
+    }
+
+    @Test
+    void unreadableTailIsKeptAsideAndReported() throws IOException {
+        TransactionJournal journal = journal();
+        Transaction kept = expense("Groceries");
+        journal.appendPut(kept);
+        journal.close();
+
+        try (FileOutputStream out = new FileOutputStream(file(), true)) {
+            out.write(new byte[] {42, 1, 2, 3});
+        }
+
+        journal = journal();
+        Recorder recorder = new Recorder();
+        assertEquals(1, journal.replay(recorder));
+        assertTrue(journal.isDamaged());
+        assertTrue(new File(file().getPath() + ".damaged").exists());
+
+        Transaction later = expense("Rent");
+        journal.appendPut(later);
+        journal.close();
+
+        recorder = new Recorder();
+        assertEquals(2, journal().replay(recorder));
+        assertEquals(List.of("put " + kept.getId(), "put " + later.getId()), recorder.records);
+    }
+
+    @Test
+    void resetDiscardsRecords() throws IOException {
+        TransactionJournal journal = journal();
+        journal.appendPut(expense("Groceries"));
+        assertEquals(1, journal.getRecordCount());
+        journal.reset();
+
+        assertEquals(0, journal.getRecordCount());
+        assertEquals(0, journal().replay(new Recorder()));
+    }
+
+    private TransactionJournal journal() {
+        return new TransactionJournal(file().getPath());
+    }
+
+    private File file() {
+        return directory.resolve("transactions.journal").toFile();
+    }
+
+    private static Transaction expense(String description) {
+        return new ExpenseTransaction(12.5, description, LocalDate.of(2024, 3, 14), FOOD);
+    }
+
+    private static final class Recorder implements TransactionJournal.Replay {
+        private final List<String> records = new ArrayList<>();
+
+        @Override
+        public void put(Transaction transaction) {
+            records.add("put " + transaction.getId());
+        }
+
+        @Override
+        public void delete(String transactionId) {
+            records.add("delete " + transactionId);
+        }
+    }
+}
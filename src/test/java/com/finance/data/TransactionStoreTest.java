@@ -0,0 +1,125 @@
+package com.finance.data;
+
+import com.finance.model.Category;
+import com.finance.model.ExpenseTransaction;
+import com.finance.model.IncomeTransaction;
+import com.finance.model.Transaction;
+import com.finance.model.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionStoreTest {
+    private static final Category FOOD = new Category(1, "Food", TransactionType.EXPENSE);
+    private static final Category SALARY = new Category(2, "Salary", TransactionType.INCOME);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writtenSegmentsAreReadBackAfterReopening() throws IOException {
+        TransactionStore store = TransactionStore.open(directory.toFile());
+        Transaction march = new ExpenseTransaction(42.17, "Groceries", LocalDate.of(2024, 3, 14), FOOD);
+        Transaction april = new IncomeTransaction(3100, "Pay", LocalDate.of(2024, 4, 1), SALARY);
+        Transaction undated = new ExpenseTransaction(3, "Undated", null, FOOD);
+        store.put(march);
+        store.put(april);
+        store.put(undated);
+        assertEquals(3, write(store));
+
+        TransactionStore reopened = TransactionStore.open(directory.toFile());
+        assertEquals(3, reopened.toList().size());
+        assertEquals("Groceries", reopened.get(march.getId()).getDescription());
+        assertEquals(april.getAmountCents(), reopened.get(april.getId()).getAmountCents());
+        assertNull(reopened.get(undated.getId()).getDate());
+        assertEquals(List.of(march.getId()),
+            ids(reopened.inRange(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31))));
+    }
+
+    @Test
+    void changesReplaceTheSegmentFile() throws IOException {
+        TransactionStore store = TransactionStore.open(directory.toFile());
+        Transaction first = new ExpenseTransaction(10, "Coffee", LocalDate.of(2024, 3, 1), FOOD);
+        Transaction second = new ExpenseTransaction(20, "Lunch", LocalDate.of(2024, 3, 2), FOOD);
+        store.put(first);
+        store.put(second);
+        write(store);
+
+        store.remove(first.getId());
+        Transaction moved = new ExpenseTransaction(second.getId(), 25, "Lunch", LocalDate.of(2024, 5, 2), FOOD);
+        assertTrue(store.replace(moved));
+        assertEquals(2, write(store));
+        assertEquals(0, write(store));
+
+        TransactionStore reopened = TransactionStore.open(directory.toFile());
+        assertNull(reopened.get(first.getId()));
+        assertEquals(LocalDate.of(2024, 5, 2), reopened.get(second.getId()).getDate());
+        assertTrue(reopened.inRange(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31)).isEmpty());
+    }
+
+    @Test
+    void mostRecentIsNewestFirst() {
+        TransactionStore store = TransactionStore.open(directory.toFile());
+        for (int day = 0; day < 90; day++) {
+            store.put(new ExpenseTransaction(day + 1, "Day " + day, LocalDate.of(2024, 1, 1).plusDays(day), FOOD));
+        }
+
+        List<Transaction> recent = store.mostRecent(5);
+        assertEquals(5, recent.size());
+        for (int i = 0; i < recent.size(); i++) {
+            assertEquals(LocalDate.of(2024, 1, 1).plusDays(89 - i), recent.get(i).getDate());
+        }
+    }
+
+    @Test
+    void invertedRangeIsEmpty() {
+        TransactionStore store = TransactionStore.open(directory.toFile());
+        store.put(new ExpenseTransaction(10, "Coffee", LocalDate.of(2024, 3, 1), FOOD));
+        store.put(new ExpenseTransaction(20, "Lunch", LocalDate.of(2024, 5, 2), FOOD));
+
+        LocalDate start = LocalDate.of(2024, 5, 31);
+        LocalDate end = LocalDate.of(2024, 3, 1);
+        assertTrue(store.inRange(start, end).isEmpty());
+
+        AggregateCube cube = new AggregateCube();
+        store.aggregateRange(start, end, cube);
+        assertNull(cube.firstMonth());
+    }
+
+    /**
+     * Write every changed segment, as FileDataManager does
+     *
+     * @return the number of segments written
+     */
+    private static int write(TransactionStore store) throws IOException {
+        List<TransactionStore.SegmentSnapshot> segments = store.dirtySegments();
+        for (TransactionStore.SegmentSnapshot segment : segments) {
+            File file = segment.getFile();
+            try (FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                TransactionFileFormat.write(segment.toList(), channel);
+            }
+            store.segmentWritten(segment);
+            segment.deletePreviousFile();
+        }
+        return segments.size();
+    }
+
+    private static List<String> ids(List<Transaction> transactions) {
+        List<String> ids = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            ids.add(transaction.getId());
+        }
+        return ids;
+    }
+}